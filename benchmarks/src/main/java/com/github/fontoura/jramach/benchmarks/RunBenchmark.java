@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.fontoura.jramach.ram.Assembler;
+import com.github.fontoura.jramach.ram.ExecutionEngine;
+import com.github.fontoura.jramach.ram.Machine;
+
+// whole runs on a step budget, the way batch jobs use the engine. scores are per instruction.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RunBenchmark {
+    private static final int STEPS = 1 << 16;
+
+    @Param({ "COUNTING", "TAPE_SCAN", "ARITHMETIC", "BRANCHY" })
+    public Workload workload;
+
+    @Param({ "256", "1048576" })
+    public int tapeLength;
+
+    @Param({ "true", "false" })
+    public boolean tracking;
+
+    @Param({ "INTERPRETED", "DECODED", "COMPILED" })
+    public ExecutionEngine engine;
+
+    private Machine machine;
+
+    @Setup
+    public void setUp() {
+        machine = new Machine(tapeLength, Workload.REGISTER_COUNT, tracking);
+        machine.setExecutionEngine(engine);
+        machine.setProgram(Assembler.compile(workload.getSource(tapeLength)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public long run() {
+        return machine.run(STEPS).getSteps();
+    }
+}
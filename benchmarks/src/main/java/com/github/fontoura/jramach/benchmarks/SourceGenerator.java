@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.benchmarks;
+
+import java.util.Random;
+
+// assembly sources that look like hand written ones: labels, comments, blank lines and literals in every base.
+public final class SourceGenerator {
+    private static final String[] VALUE_MNEMONICS = { "LOAD", "ADD", "SUB", "READ", "WRITE" };
+    private static final String[] JUMP_MNEMONICS = { "JUMP", "JZERO", "JPOS" };
+
+    private SourceGenerator() {}
+
+    public static String generate(int lineCount, long seed) {
+        Random random = new Random(seed);
+        // every label is defined up front in the numbering, so jumps may go forwards as well as backwards.
+        int labelEvery = 8;
+        int labelCount = Math.max(1, lineCount / labelEvery);
+
+        StringBuilder sb = new StringBuilder(lineCount * 16);
+        for (int line = 0; line < lineCount; line ++) {
+            int kind = random.nextInt(100);
+            if (line % labelEvery == 0) {
+                sb.append("loop").append(line / labelEvery).append(": ");
+            }
+            if (kind < 8) {
+                sb.append("; ").append("step ").append(line).append(" of the generated program\n");
+                continue;
+            }
+            if (kind < 10) {
+                sb.append('\n');
+                continue;
+            }
+            if (kind < 25) {
+                sb.append(JUMP_MNEMONICS[random.nextInt(JUMP_MNEMONICS.length)]).append(" loop").append(random.nextInt(labelCount));
+            } else if (kind < 35) {
+                sb.append("STORE R").append(1 + random.nextInt(15));
+            } else if (kind < 38) {
+                sb.append("HALF");
+            } else if (kind < 40) {
+                sb.append("NOP");
+            } else {
+                sb.append(VALUE_MNEMONICS[random.nextInt(VALUE_MNEMONICS.length)]).append(' ');
+                int base = random.nextInt(4);
+                int value = random.nextInt(256);
+                if (base == 0) {
+                    sb.append('R').append(1 + random.nextInt(15));
+                } else if (base == 1) {
+                    sb.append("0x").append(Integer.toHexString(value));
+                } else if (base == 2) {
+                    sb.append("0b").append(Integer.toBinaryString(value));
+                } else {
+                    sb.append(value);
+                }
+            }
+            if (kind % 5 == 0) {
+                sb.append("    ; trailing comment");
+            }
+            sb.append('\n');
+        }
+        sb.append("HALT\n");
+        return sb.toString();
+    }
+}
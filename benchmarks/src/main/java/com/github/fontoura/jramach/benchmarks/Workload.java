@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.benchmarks;
+
+// programs that never halt, so a benchmark can step them for as long as it likes.
+public enum Workload {
+    COUNTING(
+        "loop: LOAD R1\n" +
+        "ADD 1\n" +
+        "STORE R1\n" +
+        "JUMP loop\n"
+    ),
+
+    // walks the whole tape incrementing every cell, then starts over.
+    TAPE_SCAN(
+        "LOAD 0\n" +
+        "STORE R1\n" +
+        "loop: READ R1\n" +
+        "ADD 1\n" +
+        "WRITE R1\n" +
+        "LOAD R1\n" +
+        "ADD 1\n" +
+        "STORE R1\n" +
+        "SUB %LAST%\n" +
+        "JPOS wrap\n" +
+        "JUMP loop\n" +
+        "wrap: LOAD 0\n" +
+        "STORE R1\n" +
+        "JUMP loop\n"
+    ),
+
+    ARITHMETIC(
+        "loop: LOAD R1\n" +
+        "ADD R2\n" +
+        "STORE R3\n" +
+        "HALF\n" +
+        "ADD R4\n" +
+        "STORE R1\n" +
+        "LOAD R3\n" +
+        "SUB R1\n" +
+        "ADD 7\n" +
+        "STORE R2\n" +
+        "LOAD R4\n" +
+        "ADD R3\n" +
+        "HALF\n" +
+        "STORE R4\n" +
+        "JUMP loop\n"
+    ),
+
+    // takes a different path for each of the two lowest bits of a counter.
+    BRANCHY(
+        "loop: LOAD R1\n" +
+        "ADD 1\n" +
+        "STORE R1\n" +
+        "HALF\n" +
+        "STORE R2\n" +
+        "ADD R2\n" +
+        "STORE R3\n" +
+        "LOAD R1\n" +
+        "SUB R3\n" +
+        "JZERO even\n" +
+        "LOAD R4\n" +
+        "ADD 3\n" +
+        "STORE R4\n" +
+        "JUMP second\n" +
+        "even: LOAD R5\n" +
+        "ADD 1\n" +
+        "STORE R5\n" +
+        "second: LOAD R2\n" +
+        "HALF\n" +
+        "STORE R6\n" +
+        "ADD R6\n" +
+        "STORE R3\n" +
+        "LOAD R2\n" +
+        "SUB R3\n" +
+        "JPOS odd\n" +
+        "LOAD R4\n" +
+        "SUB 1\n" +
+        "STORE R4\n" +
+        "JUMP loop\n" +
+        "odd: LOAD R5\n" +
+        "ADD 2\n" +
+        "STORE R5\n" +
+        "JUMP loop\n"
+    );
+
+    public static final int REGISTER_COUNT = 8;
+
+    private final String source;
+
+    private Workload(String source) {
+        this.source = source;
+    }
+
+    public String getSource(int tapeLength) {
+        return source.replace("%LAST%", Integer.toString(tapeLength - 1));
+    }
+}
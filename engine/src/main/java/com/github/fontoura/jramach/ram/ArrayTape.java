@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+public final class ArrayTape extends Tape {
+    final long[] cells;
+
+    public ArrayTape(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("The tape length must not be negative!");
+        }
+        cells = new long[length];
+    }
+
+    @Override
+    public int getLength() {
+        return cells.length;
+    }
+
+    @Override
+    public long get(int address) {
+        return cells[address];
+    }
+
+    @Override
+    public void set(int address, long value) {
+        cells[address] = value;
+    }
+
+    @Override
+    Object checkpoint() {
+        return cells.clone();
+    }
+
+    @Override
+    void restore(Object state) {
+        System.arraycopy((long[]) state, 0, cells, 0, cells.length);
+    }
+}
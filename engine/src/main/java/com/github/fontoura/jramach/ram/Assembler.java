@@ -77,6 +77,28 @@ public class Assembler {
     }
 
     public static Instruction[] compile(String code) {
+        return compile(code, WordWidth.INT);
+    }
+
+    // literals must fit the words of the machines the program is for; 32-bit ones keep to non-negative ints.
+    public static Instruction[] compile(String code, WordWidth wordWidth) {
+        if (wordWidth == null) {
+            throw new IllegalArgumentException("The word width must not be null!");
+        }
+        Object event = JfrEvents.AVAILABLE ? JfrEvents.startAssembly() : null;
+        Instruction[] program = null;
+        try {
+            program = assemble(code, wordWidth == WordWidth.INT ? Integer.MAX_VALUE : Long.MAX_VALUE);
+            return program;
+        } finally {
+            MachineMetrics.getInstance().assembled(program != null);
+            if (event != null) {
+                JfrEvents.finishAssembly(event, code.length(), program);
+            }
+        }
+    }
+
+    private static Instruction[] assemble(String code, long maxLiteral) {
         String[] codeSplit = code.split("\n");
         Map<String, Integer> labelToCommandNumber = new TreeMap<String, Integer>();
         Map<Integer, List<String>> commandNumberToLabel = new TreeMap<Integer, List<String>>();
@@ -181,25 +203,25 @@ public class Assembler {
                         int jumpPosition = labelToCommandNumber.get(argumentString);
                         value = InstructionArgument.label(argumentString, jumpPosition);
                     } else if (argumentString.startsWith("0x")) {
-                        int parsedHexadecimal;
+                        long parsedHexadecimal;
                         try {
-                            parsedHexadecimal = Integer.parseInt(argumentString.substring(2), 16);
+                            parsedHexadecimal = Long.parseLong(argumentString.substring(2), 16);
                         } catch(NumberFormatException e) {
                             throw new IllegalArgumentException("Invalid argument " + argumentString + " at line " + (lineIndex + 1));
                         }
                         value = InstructionArgument.literal(parsedHexadecimal);
                     } else if (argumentString.startsWith("0b")) {
-                        int parsedBinary;
+                        long parsedBinary;
                         try {
-                            parsedBinary = Integer.parseInt(argumentString.substring(2), 2);
+                            parsedBinary = Long.parseLong(argumentString.substring(2), 2);
                         } catch(NumberFormatException e) {
                             throw new IllegalArgumentException("Invalid argument " + argumentString + " at line " + (lineIndex + 1));
                         }
                         value = InstructionArgument.literal(parsedBinary);
                     } else {
-                        int parsedNumber;
+                        long parsedNumber;
                         try {
-                            parsedNumber = Integer.parseInt(argumentString, 10);
+                            parsedNumber = Long.parseLong(argumentString, 10);
                         } catch(NumberFormatException e) {
                             throw new IllegalArgumentException("Illegal argument " + value + " at line " + (lineIndex + 1));
                         }
@@ -208,6 +230,9 @@ public class Assembler {
                     if (value instanceof InstructionArgument.Literal && ((InstructionArgument.Literal)value).getValue() < 0) {
                         throw new IllegalArgumentException("Negative literal value " + value + " at line " + (lineIndex + 1));
                     }
+                    if (value instanceof InstructionArgument.Literal && ((InstructionArgument.Literal)value).getValue() > maxLiteral) {
+                        throw new IllegalArgumentException("Literal value " + value + " does not fit the machine words at line " + (lineIndex + 1));
+                    }
                     try {
                         builder.argument(value);
                     } catch (IllegalInstructionArgumentException e) {
@@ -227,6 +252,37 @@ public class Assembler {
         return instructions;
     }
 
+    // the 1-based source line of each instruction compile() would produce, following the same comment and label rules.
+    public static int[] mapSourceLines(String code) {
+        String[] codeSplit = code.split("\n");
+        int[] lines = new int[codeSplit.length];
+        int commandNumber = 0;
+        boolean lingeringLabel = false;
+        for (int lineIndex = 0; lineIndex < codeSplit.length; lineIndex ++) {
+            String codeLine = codeSplit[lineIndex].trim();
+            int indexOfComment = codeLine.indexOf(';');
+            if (indexOfComment >= 0) {
+                codeLine = codeLine.substring(0, indexOfComment);
+            }
+            int indexOfColon = codeLine.lastIndexOf(':');
+            if (indexOfColon >= 0 && codeLine.substring(0, indexOfColon).replace(":", "").trim().length() > 0) {
+                lingeringLabel = true;
+            }
+            codeLine = codeLine.substring(indexOfColon + 1).trim();
+            if (codeLine.length() > 0) {
+                lines[commandNumber ++] = lineIndex + 1;
+                lingeringLabel = false;
+            }
+        }
+        if (lingeringLabel) {
+            // compile() puts a halt on the last line for labels with no instruction after them.
+            lines[commandNumber ++] = codeSplit.length;
+        }
+        int[] result = new int[commandNumber];
+        System.arraycopy(lines, 0, result, 0, commandNumber);
+        return result;
+    }
+
     public static String decompile(Instruction[] i) {
         StringBuilder s = new StringBuilder();
         if (i.length > 0) {
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram;
+
+public final class BasicBlock {
+    private final int index;
+    private final int firstProgramCounter;
+    private final int lastProgramCounter;
+    private final int[] successors;
+
+    BasicBlock(int index, int firstProgramCounter, int lastProgramCounter, int[] successors) {
+        this.index = index;
+        this.firstProgramCounter = firstProgramCounter;
+        this.lastProgramCounter = lastProgramCounter;
+        this.successors = successors;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getFirstProgramCounter() {
+        return firstProgramCounter;
+    }
+
+    public int getLastProgramCounter() {
+        return lastProgramCounter;
+    }
+
+    public int getLength() {
+        return lastProgramCounter - firstProgramCounter + 1;
+    }
+
+    public boolean contains(int programCounter) {
+        return programCounter >= firstProgramCounter && programCounter <= lastProgramCounter;
+    }
+
+    public int[] getSuccessors() {
+        return successors.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("B").append(index).append(" [").append(firstProgramCounter).append("..").append(lastProgramCounter).append("] ->");
+        for (int i = 0; i < successors.length; i ++) {
+            builder.append(" ").append(successors[i]);
+        }
+        return builder.toString();
+    }
+}
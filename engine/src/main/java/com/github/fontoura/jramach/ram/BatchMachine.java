@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import java.util.Arrays;
+
+public final class BatchMachine {
+    private static final byte LANE_RUNNING = 0;
+    private static final byte LANE_HALTED = 1;
+    private static final byte LANE_FAULTED = 2;
+
+    private final DecodedProgram program;
+    private final int[] opcodes;
+    private final int[] operandKinds;
+    private final long[] operands;
+    private final int[] blockEnds;
+    private final boolean narrow;
+
+    private final int lanes;
+    private final int tapeLength;
+    // row 0 holds the accumulators; each row has one column per lane.
+    private final long[][] registers;
+    // cell a of lane l lives at a * lanes + l, so a literal address touches one contiguous run.
+    private final long[] tape;
+    private final int[] programCounters;
+    private final byte[] states;
+    private final long[] stepCounts;
+    private final FaultCode[] faultCodes;
+    private final long[] faultAddresses;
+
+    // lanes waiting at each program counter, as linked lists, plus a bit set of the non-empty ones.
+    private final int[] pendingHeads;
+    private final int[] pendingTails;
+    private final int[] nextPendingLanes;
+    private final long[] pendingPcs;
+    private final int[] groupLanes;
+    private final long[] remainingSteps;
+    private int lowestQueuedWord = Integer.MAX_VALUE;
+
+    public BatchMachine(Instruction[] program, int lanes, int tapeLength, int registerCount) {
+        this(DecodedProgram.decode(program), lanes, tapeLength, registerCount, WordWidth.INT);
+    }
+
+    public BatchMachine(DecodedProgram program, int lanes, int tapeLength, int registerCount, WordWidth wordWidth) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("There must be at least one lane!");
+        }
+        if (tapeLength < 0) {
+            throw new IllegalArgumentException("The tape length must not be negative!");
+        }
+        if (registerCount < 1) {
+            throw new IllegalArgumentException("There must be at least one register!");
+        }
+        if ((long) tapeLength * lanes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The tapes of all lanes must fit in a single array!");
+        }
+        if (wordWidth == null || wordWidth == WordWidth.ARBITRARY) {
+            throw new IllegalArgumentException("Batch machines only support fixed width words!");
+        }
+        program.checkRegisters(registerCount + 1);
+        for (int i = 0; i < program.opcodes.length; i ++) {
+            if (program.opcodes[i] == DecodedProgram.OP_GENERIC) {
+                throw new IllegalArgumentException("Batch machines can only run the standard instructions (line #" + (i + 1) + ")!");
+            }
+        }
+
+        this.program = program;
+        this.opcodes = program.opcodes;
+        this.operandKinds = program.operandKinds;
+        this.narrow = wordWidth == WordWidth.INT;
+        this.operands = narrow ? program.getNarrowedOperands() : program.operands;
+        this.blockEnds = program.getAnalysis().blockEnds;
+
+        this.lanes = lanes;
+        this.tapeLength = tapeLength;
+        registers = new long[registerCount + 1][lanes];
+        tape = new long[tapeLength * lanes];
+        programCounters = new int[lanes];
+        states = new byte[lanes];
+        stepCounts = new long[lanes];
+        faultCodes = new FaultCode[lanes];
+        faultAddresses = new long[lanes];
+
+        pendingHeads = new int[opcodes.length + 1];
+        pendingTails = new int[opcodes.length + 1];
+        nextPendingLanes = new int[lanes];
+        pendingPcs = new long[(opcodes.length >> 6) + 1];
+        groupLanes = new int[lanes];
+        remainingSteps = new long[lanes];
+
+        reset();
+    }
+
+    public DecodedProgram getProgram() {
+        return program;
+    }
+
+    public int getLaneCount() {
+        return lanes;
+    }
+
+    public int getTapeLength() {
+        return tapeLength;
+    }
+
+    public int getRegisterCount() {
+        return registers.length;
+    }
+
+    public long getAccumulator(int lane) {
+        return registers[0][lane];
+    }
+
+    public void setAccumulator(int lane, long value) {
+        registers[0][lane] = narrow ? (int) value : value;
+    }
+
+    public long getRegister(int lane, int registerNumber) {
+        return registers[registerNumber][lane];
+    }
+
+    public void setRegister(int lane, int registerNumber, long value) {
+        registers[registerNumber][lane] = narrow ? (int) value : value;
+    }
+
+    public long getTape(int lane, int tapeAddress) {
+        if (tapeAddress < 0 || tapeAddress >= tapeLength) {
+            throw new IllegalArgumentException("Out of boundaries!");
+        }
+        return tape[tapeAddress * lanes + lane];
+    }
+
+    public void setTape(int lane, int tapeAddress, long value) {
+        if (tapeAddress < 0 || tapeAddress >= tapeLength) {
+            throw new IllegalArgumentException("Out of boundaries!");
+        }
+        tape[tapeAddress * lanes + lane] = narrow ? (int) value : value;
+    }
+
+    public void setTape(int lane, long[] values) {
+        if (values.length > tapeLength) {
+            throw new IllegalArgumentException("Out of boundaries!");
+        }
+        for (int i = 0; i < values.length; i ++) {
+            tape[i * lanes + lane] = narrow ? (int) values[i] : values[i];
+        }
+    }
+
+    public long[] getTape(int lane) {
+        long[] values = new long[tapeLength];
+        for (int i = 0; i < tapeLength; i ++) {
+            values[i] = tape[i * lanes + lane];
+        }
+        return values;
+    }
+
+    public int getProgramCounter(int lane) {
+        return programCounters[lane];
+    }
+
+    public boolean isHalted(int lane) {
+        return states[lane] != LANE_RUNNING;
+    }
+
+    public boolean isFaulted(int lane) {
+        return states[lane] == LANE_FAULTED;
+    }
+
+    public FaultCode getFaultCode(int lane) {
+        return faultCodes[lane];
+    }
+
+    public long getFaultAddress(int lane) {
+        return faultAddresses[lane];
+    }
+
+    public long getStepCount(int lane) {
+        return stepCounts[lane];
+    }
+
+    public RunResult.Status getStatus(int lane) {
+        if (states[lane] == LANE_FAULTED) {
+            return RunResult.Status.FAULTED;
+        } else if (states[lane] == LANE_HALTED) {
+            return RunResult.Status.HALTED;
+        } else {
+            return RunResult.Status.BUDGET_EXHAUSTED;
+        }
+    }
+
+    // like Machine.reset(), this leaves the tapes alone.
+    public void reset() {
+        for (int r = 0; r < registers.length; r ++) {
+            long[] row = registers[r];
+            for (int lane = 0; lane < lanes; lane ++) {
+                row[lane] = 0;
+            }
+        }
+        for (int lane = 0; lane < lanes; lane ++) {
+            programCounters[lane] = 1;
+            states[lane] = LANE_RUNNING;
+            stepCounts[lane] = 0;
+            faultCodes[lane] = null;
+            faultAddresses[lane] = 0;
+        }
+    }
+
+    // gives every lane that is still running up to maxSteps more steps; returns how many lanes are still running.
+    public int run(long maxSteps) {
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("The step budget must not be negative!");
+        }
+        final int[] groupLanes = this.groupLanes;
+        final int[] nextPendingLanes = this.nextPendingLanes;
+        final long[] pendingPcs = this.pendingPcs;
+
+        // a run cut short by an exception may have left lanes queued.
+        Arrays.fill(pendingHeads, -1);
+        Arrays.fill(pendingPcs, 0);
+        for (int lane = 0; lane < lanes; lane ++) {
+            remainingSteps[lane] = maxSteps;
+            if (states[lane] == LANE_RUNNING) {
+                if (programCounters[lane] > opcodes.length) {
+                    halt(lane);
+                } else if (maxSteps > 0) {
+                    enqueue(lane);
+                }
+            }
+        }
+
+        // the lowest pending pc always goes first, so lanes that split on a branch wait for each other where
+        // the paths meet again and continue from there as one group.
+        int word = 0;
+        while (word < pendingPcs.length) {
+            if (pendingPcs[word] == 0) {
+                word ++;
+                continue;
+            }
+            int pc = (word << 6) + Long.numberOfTrailingZeros(pendingPcs[word]);
+            pendingPcs[word] &= pendingPcs[word] - 1;
+            int count = 0;
+            for (int lane = pendingHeads[pc]; lane >= 0; lane = nextPendingLanes[lane]) {
+                groupLanes[count ++] = lane;
+            }
+            pendingHeads[pc] = -1;
+            executeGroup(pc, count);
+            // jumping backwards may have queued lanes below the current word.
+            word = Math.min(word, lowestQueuedWord);
+            lowestQueuedWord = Integer.MAX_VALUE;
+        }
+
+        int running = 0;
+        for (int lane = 0; lane < lanes; lane ++) {
+            if (states[lane] == LANE_RUNNING) {
+                running ++;
+            }
+        }
+        return running;
+    }
+
+    private void enqueue(int lane) {
+        int pc = programCounters[lane];
+        nextPendingLanes[lane] = -1;
+        if (pendingHeads[pc] < 0) {
+            pendingHeads[pc] = lane;
+            pendingPcs[pc >> 6] |= 1L << pc;
+            lowestQueuedWord = Math.min(lowestQueuedWord, pc >> 6);
+        } else {
+            nextPendingLanes[pendingTails[pc]] = lane;
+        }
+        pendingTails[pc] = lane;
+    }
+
+    public int runUntilHalt() {
+        return run(Long.MAX_VALUE);
+    }
+
+    private void executeGroup(int pc, int count) {
+        final int[] opcodes = this.opcodes;
+        final int[] operandKinds = this.operandKinds;
+        final long[] operands = this.operands;
+        final long[][] registers = this.registers;
+        final long[] accumulators = registers[0];
+        final long[] tape = this.tape;
+        final int[] group = groupLanes;
+        final int[] programCounters = this.programCounters;
+        final long[] remainingSteps = this.remainingSteps;
+        final boolean narrow = this.narrow;
+        final int lanes = this.lanes;
+
+        // the whole group runs to the end of the block, or as far as its tightest budget allows.
+        int first = pc - 1;
+        int last = blockEnds[first];
+        long budget = remainingSteps[group[0]];
+        for (int i = 1; i < count; i ++) {
+            budget = Math.min(budget, remainingSteps[group[i]]);
+        }
+        if (last - first >= budget) {
+            last = first + (int) budget - 1;
+        }
+
+        // a group holding a run of consecutive lanes in order can be walked as a plain range.
+        boolean contiguous = isContiguous(group, count);
+        boolean jumped = false;
+        for (int index = first; index <= last && count > 0; index ++) {
+            long operand = operands[index];
+            boolean register = operandKinds[index] == DecodedProgram.KIND_REGISTER;
+            int from = group[0];
+            int to = from + count;
+            long[] values = register ? registers[(int) operand] : null;
+            int kept;
+            switch (opcodes[index]) {
+            case DecodedProgram.OP_NOP:
+                break;
+            case DecodedProgram.OP_ADD:
+                if (contiguous) {
+                    for (int lane = from; lane < to; lane ++) {
+                        long sum = accumulators[lane] + (register ? values[lane] : operand);
+                        accumulators[lane] = narrow ? (int) sum : sum;
+                    }
+                } else {
+                    for (int i = 0; i < count; i ++) {
+                        int lane = group[i];
+                        long sum = accumulators[lane] + (register ? values[lane] : operand);
+                        accumulators[lane] = narrow ? (int) sum : sum;
+                    }
+                }
+                break;
+            case DecodedProgram.OP_SUB:
+                if (contiguous) {
+                    for (int lane = from; lane < to; lane ++) {
+                        long difference = accumulators[lane] - (register ? values[lane] : operand);
+                        accumulators[lane] = Math.max(0, narrow ? (int) difference : difference);
+                    }
+                } else {
+                    for (int i = 0; i < count; i ++) {
+                        int lane = group[i];
+                        long difference = accumulators[lane] - (register ? values[lane] : operand);
+                        accumulators[lane] = Math.max(0, narrow ? (int) difference : difference);
+                    }
+                }
+                break;
+            case DecodedProgram.OP_HALF:
+                if (contiguous) {
+                    for (int lane = from; lane < to; lane ++) {
+                        accumulators[lane] = accumulators[lane] / 2;
+                    }
+                } else {
+                    for (int i = 0; i < count; i ++) {
+                        int lane = group[i];
+                        accumulators[lane] = accumulators[lane] / 2;
+                    }
+                }
+                break;
+            case DecodedProgram.OP_LOAD:
+                if (contiguous) {
+                    for (int lane = from; lane < to; lane ++) {
+                        accumulators[lane] = register ? values[lane] : operand;
+                    }
+                } else {
+                    for (int i = 0; i < count; i ++) {
+                        int lane = group[i];
+                        accumulators[lane] = register ? values[lane] : operand;
+                    }
+                }
+                break;
+            case DecodedProgram.OP_STORE:
+                if (contiguous) {
+                    System.arraycopy(accumulators, from, values, from, count);
+                } else {
+                    for (int i = 0; i < count; i ++) {
+                        int lane = group[i];
+                        values[lane] = accumulators[lane];
+                    }
+                }
+                break;
+            case DecodedProgram.OP_READ:
+                if (!register && operand >= 0 && operand < tapeLength) {
+                    int row = (int) operand * lanes;
+                    for (int i = 0; i < count; i ++) {
+                        int lane = group[i];
+                        accumulators[lane] = tape[row + lane];
+                    }
+                    break;
+                }
+                kept = 0;
+                for (int i = 0; i < count; i ++) {
+                    int lane = group[i];
+                    long address = register ? values[lane] : operand;
+                    if (address < 0 || address >= tapeLength) {
+                        fault(lane, index, first, FaultCode.TAPE_READ_OUT_OF_BOUNDS, address);
+                        continue;
+                    }
+                    accumulators[lane] = tape[(int) address * lanes + lane];
+                    group[kept ++] = lane;
+                }
+                contiguous = contiguous && kept == count;
+                count = kept;
+                break;
+            case DecodedProgram.OP_WRITE:
+                if (!register && operand >= 0 && operand < tapeLength) {
+                    int row = (int) operand * lanes;
+                    for (int i = 0; i < count; i ++) {
+                        int lane = group[i];
+                        tape[row + lane] = accumulators[lane];
+                    }
+                    break;
+                }
+                kept = 0;
+                for (int i = 0; i < count; i ++) {
+                    int lane = group[i];
+                    long address = register ? values[lane] : operand;
+                    if (address < 0 || address >= tapeLength) {
+                        fault(lane, index, first, FaultCode.TAPE_WRITE_OUT_OF_BOUNDS, address);
+                        continue;
+                    }
+                    tape[(int) address * lanes + lane] = accumulators[lane];
+                    group[kept ++] = lane;
+                }
+                contiguous = contiguous && kept == count;
+                count = kept;
+                break;
+            case DecodedProgram.OP_JZERO:
+                // this is where lanes split; they meet again whenever they reach the same pc.
+                for (int i = 0; i < count; i ++) {
+                    int lane = group[i];
+                    programCounters[lane] = accumulators[lane] == 0 ? (int) operand : index + 2;
+                }
+                jumped = true;
+                break;
+            case DecodedProgram.OP_JPOS:
+                for (int i = 0; i < count; i ++) {
+                    int lane = group[i];
+                    programCounters[lane] = accumulators[lane] > 0 ? (int) operand : index + 2;
+                }
+                jumped = true;
+                break;
+            case DecodedProgram.OP_JUMP:
+                for (int i = 0; i < count; i ++) {
+                    programCounters[group[i]] = (int) operand;
+                }
+                jumped = true;
+                break;
+            case DecodedProgram.OP_HALT:
+                for (int i = 0; i < count; i ++) {
+                    int lane = group[i];
+                    stepCounts[lane] += index - first + 1;
+                    halt(lane);
+                }
+                count = 0;
+                break;
+            }
+        }
+
+        int steps = last - first + 1;
+        for (int i = 0; i < count; i ++) {
+            int lane = group[i];
+            if (!jumped) {
+                programCounters[lane] = last + 2;
+            }
+            stepCounts[lane] += steps;
+            remainingSteps[lane] -= steps;
+            if (programCounters[lane] > opcodes.length) {
+                halt(lane);
+            } else if (remainingSteps[lane] > 0) {
+                enqueue(lane);
+            }
+        }
+    }
+
+    private static boolean isContiguous(int[] group, int count) {
+        int first = group[0];
+        for (int i = 1; i < count; i ++) {
+            if (group[i] != first + i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void halt(int lane) {
+        states[lane] = LANE_HALTED;
+        programCounters[lane] = 1;
+    }
+
+    private void fault(int lane, int index, int first, FaultCode faultCode, long address) {
+        states[lane] = LANE_FAULTED;
+        programCounters[lane] = index + 1;
+        stepCounts[lane] += index - first + 1;
+        faultCodes[lane] = faultCode;
+        faultAddresses[lane] = address;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public final class BatchRunner {
+    private BatchRunner() {}
+
+    public static List<JobResult> runAll(Instruction[] program, List<long[]> inputTapes, Limits limits) {
+        return runAll(DecodedProgram.decode(program), inputTapes, limits);
+    }
+
+    public static List<JobResult> runAll(DecodedProgram program, List<long[]> inputTapes, Limits limits) {
+        if (limits.getTapeLength() > 0) {
+            for (long[] inputTape : inputTapes) {
+                if (inputTape.length > limits.getTapeLength()) {
+                    throw new IllegalArgumentException("An input tape is longer than the tape length!");
+                }
+            }
+        }
+        long deadline = Machine.NO_DEADLINE;
+        if (limits.getTimeoutMillis() > 0) {
+            deadline = System.nanoTime() + limits.getTimeoutMillis() * 1000000L;
+        }
+
+        Batch batch = new Batch(program, inputTapes, limits, deadline);
+        JobsTask task = new JobsTask(batch, 0, inputTapes.size());
+        if (limits.getParallelism() > 0) {
+            ForkJoinPool pool = new ForkJoinPool(limits.getParallelism());
+            try {
+                pool.invoke(task);
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+        return Collections.unmodifiableList(Arrays.asList(batch.results));
+    }
+
+    // everything the jobs of one call share. the machines only live as long as the call, so the
+    // pool threads don't keep their tapes once it returns.
+    private static final class Batch {
+        final DecodedProgram program;
+        final List<long[]> inputTapes;
+        final Limits limits;
+        final long deadline;
+        final JobResult[] results;
+        // each worker thread keeps the machine of its last job and reuses it whenever the next one fits.
+        final Map<Thread, PooledMachine> machines = new ConcurrentHashMap<Thread, PooledMachine>();
+
+        Batch(DecodedProgram program, List<long[]> inputTapes, Limits limits, long deadline) {
+            this.program = program;
+            this.inputTapes = inputTapes;
+            this.limits = limits;
+            this.deadline = deadline;
+            this.results = new JobResult[inputTapes.size()];
+        }
+
+        JobResult runJob(int index) {
+            long[] inputTape = inputTapes.get(index);
+            int tapeLength = limits.getTapeLength() > 0 ? limits.getTapeLength() : inputTape.length;
+            Machine machine = obtainMachine(tapeLength);
+            for (int i = 0; i < tapeLength; i ++) {
+                machine.setTape(i, i < inputTape.length ? inputTape[i] : 0);
+            }
+
+            RunResult.Status status = machine.run(limits.getMaxSteps(), deadline).getStatus();
+
+            long[] tape = new long[tapeLength];
+            for (int i = 0; i < tapeLength; i ++) {
+                tape[i] = machine.getTape(i);
+            }
+            return new JobResult(status, tape, machine.getAccumulator(), machine.getStepCount(), machine.getProgramCounter(), machine.getFaultCode(), machine.getFaultAddress());
+        }
+
+        private Machine obtainMachine(int tapeLength) {
+            Thread thread = Thread.currentThread();
+            PooledMachine pooled = machines.get(thread);
+            if (pooled == null || !pooled.fits(tapeLength, limits)) {
+                Machine machine = new Machine(tapeLength, limits.getRegisterCount(), false, limits.getWordWidth());
+                machine.setExecutionEngine(limits.getExecutionEngine());
+                pooled = new PooledMachine(machine);
+                machines.put(thread, pooled);
+            }
+            // setting the program again would throw away the code compiled for it.
+            if (pooled.program != program) {
+                pooled.machine.setProgram(program);
+                pooled.program = program;
+            }
+            pooled.machine.reset();
+            return pooled.machine;
+        }
+    }
+
+    private static final class PooledMachine {
+        final Machine machine;
+        DecodedProgram program;
+
+        PooledMachine(Machine machine) {
+            this.machine = machine;
+        }
+
+        boolean fits(int tapeLength, Limits limits) {
+            return machine.getTapeLength() == tapeLength
+                    && machine.getRegisterCount() == limits.getRegisterCount() + 1
+                    && machine.getWordWidth() == limits.getWordWidth()
+                    && machine.getExecutionEngine() == limits.getExecutionEngine();
+        }
+    }
+
+    private static final class JobsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Batch batch;
+        private final int from;
+        private final int to;
+
+        JobsTask(Batch batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    batch.results[from] = batch.runJob(from);
+                }
+                return;
+            }
+            // halves left unclaimed by this thread are stolen by idle ones.
+            int middle = (from + to) >>> 1;
+            invokeAll(new JobsTask(batch, from, middle), new JobsTask(batch, middle, to));
+        }
+    }
+}
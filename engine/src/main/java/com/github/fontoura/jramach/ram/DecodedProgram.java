@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.fontoura.jramach.ram.instructions.AddInstructionType;
+import com.github.fontoura.jramach.ram.instructions.HalfInstructionType;
+import com.github.fontoura.jramach.ram.instructions.HaltInstructionType;
+import com.github.fontoura.jramach.ram.instructions.JposInstructionType;
+import com.github.fontoura.jramach.ram.instructions.JumpInstructionType;
+import com.github.fontoura.jramach.ram.instructions.JzeroInstructionType;
+import com.github.fontoura.jramach.ram.instructions.LoadInstructionType;
+import com.github.fontoura.jramach.ram.instructions.NopInstructionType;
+import com.github.fontoura.jramach.ram.instructions.ReadInstructionType;
+import com.github.fontoura.jramach.ram.instructions.StoreInstructionType;
+import com.github.fontoura.jramach.ram.instructions.SubInstructionType;
+import com.github.fontoura.jramach.ram.instructions.WriteInstructionType;
+import com.github.fontoura.jramach.ram.jit.BytecodeCompiler;
+import com.github.fontoura.jramach.ram.jit.CompiledProgram;
+
+public final class DecodedProgram {
+    public static final int OP_GENERIC = 0;
+    public static final int OP_NOP = 1;
+    public static final int OP_ADD = 2;
+    public static final int OP_SUB = 3;
+    public static final int OP_HALF = 4;
+    public static final int OP_LOAD = 5;
+    public static final int OP_STORE = 6;
+    public static final int OP_READ = 7;
+    public static final int OP_WRITE = 8;
+    public static final int OP_JZERO = 9;
+    public static final int OP_JPOS = 10;
+    public static final int OP_JUMP = 11;
+    public static final int OP_HALT = 12;
+
+    public static final int OP_LOAD_ADD_STORE = 13;
+    public static final int OP_LOAD_SUB_STORE = 14;
+    public static final int OP_LOAD_ADD = 15;
+    public static final int OP_LOAD_SUB = 16;
+    public static final int OP_ADD_JZERO = 17;
+    public static final int OP_ADD_JPOS = 18;
+    public static final int OP_SUB_JZERO = 19;
+    public static final int OP_SUB_JPOS = 20;
+    public static final int OP_READ_STORE = 21;
+    public static final int OP_LOAD_WRITE = 22;
+
+    static final int FIRST_FUSED_OPCODE = OP_LOAD_ADD_STORE;
+
+    public static final int KIND_NONE = 0;
+    public static final int KIND_LITERAL = 1;
+    public static final int KIND_REGISTER = 2;
+    public static final int KIND_LABEL = 3;
+
+    final Instruction[] instructions;
+    final int[] opcodes;
+    final int[] operandKinds;
+    final long[] operands;
+    // the operands as 32-bit machines see them. programs are shared between threads, so this is worked
+    // out up front rather than on first use.
+    private final long[] narrowedOperands;
+    final int[] fusedOpcodes;
+    // the lowest and highest register numbers any instruction names, so machines can check them once.
+    private final int lowestRegister;
+    private final int highestRegister;
+    private ProgramAnalysis analysis;
+    private LoopAccelerator loopAccelerator;
+    private final Map<String, CompiledProgram> compiledPrograms = new HashMap<String, CompiledProgram>();
+
+    private DecodedProgram(Instruction[] instructions, int[] opcodes, int[] operandKinds, long[] operands, long[] narrowedOperands, int[] fusedOpcodes, int lowestRegister, int highestRegister) {
+        this.instructions = instructions;
+        this.opcodes = opcodes;
+        this.operandKinds = operandKinds;
+        this.operands = operands;
+        this.narrowedOperands = narrowedOperands;
+        this.fusedOpcodes = fusedOpcodes;
+        this.lowestRegister = lowestRegister;
+        this.highestRegister = highestRegister;
+    }
+
+    DecodedProgram withFusedOpcodes(int[] fusedOpcodes) {
+        return new DecodedProgram(instructions, opcodes, operandKinds, operands, narrowedOperands, fusedOpcodes, lowestRegister, highestRegister);
+    }
+
+    public static DecodedProgram decode(Instruction[] program) {
+        Instruction[] instructions = program.clone();
+        int[] opcodes = new int[instructions.length];
+        int[] operandKinds = new int[instructions.length];
+        long[] operands = new long[instructions.length];
+        long[] narrowedOperands = new long[instructions.length];
+        int lowestRegister = 0;
+        int highestRegister = 0;
+        for (int i = 0; i < instructions.length; i ++) {
+            Instruction instruction = instructions[i];
+            int opcode = lookForOpcode(instruction.getInstructionType());
+            List<InstructionArgument> arguments = instruction.getArguments();
+            for (InstructionArgument argument : arguments) {
+                if (argument instanceof InstructionArgument.Register) {
+                    lowestRegister = Math.min(lowestRegister, ((InstructionArgument.Register)argument).getNumber());
+                    highestRegister = Math.max(highestRegister, ((InstructionArgument.Register)argument).getNumber());
+                }
+            }
+            int operandKind = KIND_NONE;
+            long operand = 0;
+            if (arguments.size() > 0) {
+                InstructionArgument argument = arguments.get(0);
+                if (argument instanceof InstructionArgument.Literal) {
+                    operandKind = KIND_LITERAL;
+                    operand = ((InstructionArgument.Literal)argument).getValue();
+                } else if (argument instanceof InstructionArgument.Register) {
+                    operandKind = KIND_REGISTER;
+                    operand = ((InstructionArgument.Register)argument).getNumber();
+                } else if (argument instanceof InstructionArgument.Label) {
+                    operandKind = KIND_LABEL;
+                    operand = ((InstructionArgument.Label)argument).getPosition();
+                }
+            }
+            if (!isSupported(opcode, arguments.size(), operandKind)) {
+                // anything the decoder does not fully understand runs through the instruction itself.
+                opcode = OP_GENERIC;
+                operandKind = KIND_NONE;
+                operand = 0;
+            }
+            opcodes[i] = opcode;
+            operandKinds[i] = operandKind;
+            operands[i] = operand;
+            narrowedOperands[i] = (int) operand;
+        }
+        return new DecodedProgram(instructions, opcodes, operandKinds, operands, narrowedOperands, null, lowestRegister, highestRegister);
+    }
+
+    private static int lookForOpcode(InstructionType instructionType) {
+        Class<?> typeClass = instructionType.getClass();
+        if (typeClass == NopInstructionType.class) {
+            return OP_NOP;
+        } else if (typeClass == AddInstructionType.class) {
+            return OP_ADD;
+        } else if (typeClass == SubInstructionType.class) {
+            return OP_SUB;
+        } else if (typeClass == HalfInstructionType.class) {
+            return OP_HALF;
+        } else if (typeClass == LoadInstructionType.class) {
+            return OP_LOAD;
+        } else if (typeClass == StoreInstructionType.class) {
+            return OP_STORE;
+        } else if (typeClass == ReadInstructionType.class) {
+            return OP_READ;
+        } else if (typeClass == WriteInstructionType.class) {
+            return OP_WRITE;
+        } else if (typeClass == JzeroInstructionType.class) {
+            return OP_JZERO;
+        } else if (typeClass == JposInstructionType.class) {
+            return OP_JPOS;
+        } else if (typeClass == JumpInstructionType.class) {
+            return OP_JUMP;
+        } else if (typeClass == HaltInstructionType.class) {
+            return OP_HALT;
+        } else {
+            return OP_GENERIC;
+        }
+    }
+
+    private static boolean isSupported(int opcode, int argumentCount, int operandKind) {
+        switch (opcode) {
+        case OP_NOP:
+        case OP_HALF:
+        case OP_HALT:
+            return argumentCount == 0;
+        case OP_ADD:
+        case OP_SUB:
+        case OP_LOAD:
+        case OP_READ:
+        case OP_WRITE:
+            return argumentCount == 1 && (operandKind == KIND_LITERAL || operandKind == KIND_REGISTER);
+        case OP_STORE:
+            return argumentCount == 1 && operandKind == KIND_REGISTER;
+        case OP_JZERO:
+        case OP_JPOS:
+        case OP_JUMP:
+            return argumentCount == 1 && operandKind == KIND_LABEL;
+        default:
+            return false;
+        }
+    }
+
+    public static int fusedLength(int opcode) {
+        switch (opcode) {
+        case OP_LOAD_ADD_STORE:
+        case OP_LOAD_SUB_STORE:
+            return 3;
+        case OP_LOAD_ADD:
+        case OP_LOAD_SUB:
+        case OP_ADD_JZERO:
+        case OP_ADD_JPOS:
+        case OP_SUB_JZERO:
+        case OP_SUB_JPOS:
+        case OP_READ_STORE:
+        case OP_LOAD_WRITE:
+            return 2;
+        default:
+            return 1;
+        }
+    }
+
+    public ProgramAnalysis getAnalysis() {
+        if (analysis == null) {
+            analysis = ProgramAnalysis.analyze(this);
+        }
+        return analysis;
+    }
+
+    // the register count includes the accumulator, R0.
+    public void checkRegisters(int registerCount) {
+        if (lowestRegister < 0) {
+            throw new IllegalArgumentException("The program uses register R" + lowestRegister + ", which does not exist!");
+        }
+        if (highestRegister >= registerCount) {
+            throw new IllegalArgumentException("The program uses register R" + highestRegister + ", but there are only registers up to R" + (registerCount - 1) + "!");
+        }
+    }
+
+    // every machine running this program shares its compiled code; programs that can't be compiled are remembered as null.
+    public CompiledProgram getCompiledProgram(int registerCount, WordWidth wordWidth) {
+        String key = registerCount + ":" + wordWidth;
+        synchronized (compiledPrograms) {
+            if (!compiledPrograms.containsKey(key)) {
+                compiledPrograms.put(key, BytecodeCompiler.compile(this, registerCount, wordWidth));
+            }
+            return compiledPrograms.get(key);
+        }
+    }
+
+    long[] getNarrowedOperands() {
+        return narrowedOperands;
+    }
+
+    LoopAccelerator getLoopAccelerator() {
+        if (loopAccelerator == null) {
+            loopAccelerator = LoopAccelerator.analyze(this);
+        }
+        return loopAccelerator;
+    }
+
+    public int length() {
+        return opcodes.length;
+    }
+
+    public Instruction getInstruction(int index) {
+        return instructions[index];
+    }
+
+    public int getOpcode(int index) {
+        return opcodes[index];
+    }
+
+    public int getOperandKind(int index) {
+        return operandKinds[index];
+    }
+
+    public long getOperand(int index) {
+        return operands[index];
+    }
+
+    public boolean isFused() {
+        return fusedOpcodes != null;
+    }
+
+    public int getFusedOpcode(int index) {
+        return fusedOpcodes != null ? fusedOpcodes[index] : opcodes[index];
+    }
+
+    public int[] getOpcodes() {
+        return opcodes.clone();
+    }
+
+    public int[] getOperandKinds() {
+        return operandKinds.clone();
+    }
+
+    public long[] getOperands() {
+        return operands.clone();
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public final class ExecutionProfile {
+    private final DecodedProgram program;
+    private final List<BasicBlock> blocks;
+    private final int[] sourceLines;
+    private final long[] executions;
+    private final long[] branchesTaken;
+    private final long[] branchesNotTaken;
+    private final long[] blockEntries;
+    private final long[] blockNanos;
+    private final TapeCounters tapeReads;
+    private final TapeCounters tapeWrites;
+    private final long totalSteps;
+
+    ExecutionProfile(Profiler profiler, int[] sourceLines) {
+        this.program = profiler.program;
+        this.blocks = program != null ? program.getAnalysis().basicBlocks() : Collections.<BasicBlock>emptyList();
+        this.executions = profiler.executions.clone();
+        if (program != null) {
+            int[] blockIndices = program.getAnalysis().blockIndices;
+            for (int i = 0; i < executions.length; i ++) {
+                executions[i] += profiler.blockRuns[blockIndices[i]];
+            }
+        }
+        this.branchesTaken = profiler.branchesTaken.clone();
+        this.branchesNotTaken = profiler.branchesNotTaken.clone();
+        this.blockEntries = profiler.blockEntries.clone();
+        this.tapeReads = profiler.tapeReads.copy();
+        this.tapeWrites = profiler.tapeWrites.copy();
+
+        // without a source (or before anything was profiled) every instruction is its own line.
+        if (sourceLines != null && program != null && sourceLines.length != executions.length) {
+            throw new IllegalArgumentException("The source has " + sourceLines.length + " instructions, but the profiled program has " + executions.length + "!");
+        }
+        if (sourceLines == null || program == null) {
+            sourceLines = new int[executions.length];
+            for (int i = 0; i < sourceLines.length; i ++) {
+                sourceLines[i] = i + 1;
+            }
+        }
+        this.sourceLines = sourceLines;
+
+        // only some entries were timed, so the total is scaled up to all of them.
+        this.blockNanos = new long[blockEntries.length];
+        for (int i = 0; i < blockNanos.length; i ++) {
+            if (profiler.blockSamples[i] > 0) {
+                blockNanos[i] = (long) ((double) profiler.blockSampledNanos[i] * blockEntries[i] / profiler.blockSamples[i]);
+            }
+        }
+
+        long totalSteps = 0;
+        for (int i = 0; i < executions.length; i ++) {
+            totalSteps += executions[i];
+        }
+        this.totalSteps = totalSteps;
+    }
+
+    public int getInstructionCount() {
+        return executions.length;
+    }
+
+    public long getTotalSteps() {
+        return totalSteps;
+    }
+
+    public long getExecutions(int programCounter) {
+        return executions[programCounter - 1];
+    }
+
+    public long getBranchesTaken(int programCounter) {
+        return branchesTaken[programCounter - 1];
+    }
+
+    public long getBranchesNotTaken(int programCounter) {
+        return branchesNotTaken[programCounter - 1];
+    }
+
+    public int getSourceLine(int programCounter) {
+        return sourceLines[programCounter - 1];
+    }
+
+    public List<BasicBlock> basicBlocks() {
+        return blocks;
+    }
+
+    public long getBlockEntries(int blockIndex) {
+        return blockEntries[blockIndex];
+    }
+
+    public long getBlockSteps(int blockIndex) {
+        BasicBlock block = blocks.get(blockIndex);
+        long steps = 0;
+        for (int pc = block.getFirstProgramCounter(); pc <= block.getLastProgramCounter(); pc ++) {
+            steps += executions[pc - 1];
+        }
+        return steps;
+    }
+
+    public long getBlockNanos(int blockIndex) {
+        return blockNanos[blockIndex];
+    }
+
+    public List<BasicBlock> hottestBlocks(int count) {
+        List<BasicBlock> sorted = new ArrayList<BasicBlock>(blocks);
+        Collections.sort(sorted, new Comparator<BasicBlock>() {
+            public int compare(BasicBlock a, BasicBlock b) {
+                int byTime = Long.compare(blockNanos[b.getIndex()], blockNanos[a.getIndex()]);
+                return byTime != 0 ? byTime : Long.compare(getBlockSteps(b.getIndex()), getBlockSteps(a.getIndex()));
+            }
+        });
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+
+    // one past the highest address that was read or written.
+    public int getTapeLength() {
+        return Math.max(tapeReads.getLength(), tapeWrites.getLength());
+    }
+
+    public long getTapeReads(int tapeAddress) {
+        return tapeReads.get(tapeAddress);
+    }
+
+    public long getTapeWrites(int tapeAddress) {
+        return tapeWrites.get(tapeAddress);
+    }
+
+    // the lowest address at or after the given one that was read or written, or -1.
+    private int nextTouchedAddress(int address) {
+        int read = tapeReads.nextCounted(address);
+        int written = tapeWrites.nextCounted(address);
+        return read < 0 ? written : written < 0 ? read : Math.min(read, written);
+    }
+
+    public String toInstructionCsv() {
+        StringBuilder sb = new StringBuilder("pc,line,instruction,executions,taken,not_taken\n");
+        for (int pc = 1; pc <= executions.length; pc ++) {
+            sb.append(pc).append(',').append(getSourceLine(pc)).append(",\"").append(instructionText(pc).replace("\"", "\"\"")).append("\",");
+            sb.append(getExecutions(pc)).append(',').append(getBranchesTaken(pc)).append(',').append(getBranchesNotTaken(pc)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public String toBlockCsv() {
+        StringBuilder sb = new StringBuilder("block,first_pc,last_pc,first_line,last_line,entries,steps,nanos\n");
+        for (BasicBlock block : blocks) {
+            int index = block.getIndex();
+            sb.append(index).append(',').append(block.getFirstProgramCounter()).append(',').append(block.getLastProgramCounter()).append(',');
+            sb.append(getSourceLine(block.getFirstProgramCounter())).append(',').append(getSourceLine(block.getLastProgramCounter())).append(',');
+            sb.append(blockEntries[index]).append(',').append(getBlockSteps(index)).append(',').append(blockNanos[index]).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // addresses that were never touched are left out.
+    public String toTapeCsv() {
+        StringBuilder sb = new StringBuilder("address,reads,writes\n");
+        for (int address = nextTouchedAddress(0); address >= 0; address = nextTouchedAddress(address + 1)) {
+            sb.append(address).append(',').append(getTapeReads(address)).append(',').append(getTapeWrites(address)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"totalSteps\":").append(totalSteps).append(",\"instructions\":[");
+        for (int pc = 1; pc <= executions.length; pc ++) {
+            if (pc > 1) {
+                sb.append(',');
+            }
+            sb.append("{\"pc\":").append(pc).append(",\"line\":").append(getSourceLine(pc));
+            sb.append(",\"instruction\":\"").append(instructionText(pc).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            sb.append(",\"executions\":").append(getExecutions(pc));
+            if (isBranch(pc)) {
+                sb.append(",\"taken\":").append(getBranchesTaken(pc)).append(",\"notTaken\":").append(getBranchesNotTaken(pc));
+            }
+            sb.append('}');
+        }
+        sb.append("],\"blocks\":[");
+        for (BasicBlock block : blocks) {
+            int index = block.getIndex();
+            if (index > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"block\":").append(index);
+            sb.append(",\"firstPc\":").append(block.getFirstProgramCounter()).append(",\"lastPc\":").append(block.getLastProgramCounter());
+            sb.append(",\"firstLine\":").append(getSourceLine(block.getFirstProgramCounter())).append(",\"lastLine\":").append(getSourceLine(block.getLastProgramCounter()));
+            sb.append(",\"entries\":").append(blockEntries[index]).append(",\"steps\":").append(getBlockSteps(index)).append(",\"nanos\":").append(blockNanos[index]).append('}');
+        }
+        sb.append("],\"tape\":[");
+        boolean first = true;
+        for (int address = nextTouchedAddress(0); address >= 0; address = nextTouchedAddress(address + 1)) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append("{\"address\":").append(address).append(",\"reads\":").append(getTapeReads(address)).append(",\"writes\":").append(getTapeWrites(address)).append('}');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private boolean isBranch(int programCounter) {
+        int opcode = program.getOpcode(programCounter - 1);
+        return opcode == DecodedProgram.OP_JZERO || opcode == DecodedProgram.OP_JPOS;
+    }
+
+    private String instructionText(int programCounter) {
+        return Assembler.decompile(new Instruction[] { program.getInstruction(programCounter - 1) });
+    }
+}
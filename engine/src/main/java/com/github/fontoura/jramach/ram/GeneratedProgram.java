@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+public final class GeneratedProgram {
+    private final String source;
+    private final Instruction[] instructions;
+    private final long stepCount;
+    private final int registerCount;
+    private final int tapeLength;
+
+    GeneratedProgram(String source, Instruction[] instructions, long stepCount, int registerCount, int tapeLength) {
+        this.source = source;
+        this.instructions = instructions;
+        this.stepCount = stepCount;
+        this.registerCount = registerCount;
+        this.tapeLength = tapeLength;
+    }
+
+    // already in the form decompile produces, so it round-trips verbatim.
+    public String getSource() {
+        return source;
+    }
+
+    public Instruction[] getInstructions() {
+        return instructions;
+    }
+
+    // steps up to and including the final halt, whatever the tape holds.
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    // the smallest register count a machine needs to run the program.
+    public int getRegisterCount() {
+        return registerCount;
+    }
+
+    // the smallest tape the program can run on without faulting.
+    public int getTapeLength() {
+        return tapeLength;
+    }
+}
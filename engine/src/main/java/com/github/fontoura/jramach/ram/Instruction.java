@@ -29,6 +29,7 @@ import java.util.List;
 import com.github.fontoura.jramach.ram.exceptions.IllegalInstructionArgumentException;
 import com.github.fontoura.jramach.ram.exceptions.IllegalMachineOperationException;
 import com.github.fontoura.jramach.ram.exceptions.MissingInstructionArgumentException;
+import com.github.fontoura.jramach.ram.instructions.SpecializedInstructions;
 
 public class Instruction {
     public static class Builder {
@@ -61,7 +62,7 @@ public class Instruction {
             if (arguments.size() < instructionType.getArgumentCount()) {
 
             }
-            return new Instruction(instructionType, labels, arguments);
+            return SpecializedInstructions.specialize(instructionType, labels, arguments);
         }
     }
 
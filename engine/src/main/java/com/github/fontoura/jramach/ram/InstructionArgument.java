@@ -24,7 +24,7 @@
 package com.github.fontoura.jramach.ram;
 
 public abstract class InstructionArgument {
-    public static InstructionArgument literal(int value) {
+    public static InstructionArgument literal(long value) {
         return new InstructionArgument.Literal(value);
     }
 
@@ -37,13 +37,13 @@ public abstract class InstructionArgument {
     }
 
     public static final class Literal extends InstructionArgument {
-        private final int value;
+        private final long value;
 
-        public Literal(int value) {
+        public Literal(long value) {
             this.value = value;
         }
 
-        public int getValue() {
+        public long getValue() {
             return value;
         }
 
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+// the engine still runs on java 8 builds without flight recorder, so everything from jdk.jfr lives in
+// the nested Events class, which is only loaded by the methods below after checking AVAILABLE.
+final class JfrEvents {
+    static final boolean AVAILABLE = isAvailable();
+
+    // at most one sample per running machine in this interval.
+    static final long SAMPLE_INTERVAL_NANOS = 20000000L;
+
+    private JfrEvents() {}
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    static Object startAssembly() {
+        return Events.Assembly.start();
+    }
+
+    static void finishAssembly(Object started, int sourceLength, Instruction[] program) {
+        Events.Assembly.finish(started, sourceLength, program);
+    }
+
+    static Object startRun() {
+        return Events.Run.start();
+    }
+
+    static void finishRun(Object started, Machine machine, long startTime, long steps, RunResult.Status status) {
+        Events.Run.finish(started, machine, startTime, steps, status);
+    }
+
+    static void fault(FaultCode faultCode, int programCounter, long address, String reason) {
+        Events.Fault.emit(faultCode, programCounter, address, reason);
+    }
+
+    // returns the time of the last sample taken, which is the given one if this call took none.
+    static long sample(Machine machine, long lastSampleTime) {
+        return Events.ExecutionSample.emit(machine, lastSampleTime);
+    }
+
+    private static final class Events {
+        private Events() {}
+
+        @jdk.jfr.Name("com.github.fontoura.jramach.Assembly")
+        @jdk.jfr.Label("Program Assembly")
+        @jdk.jfr.Category("jRAMach")
+        @jdk.jfr.Description("A program assembled from source.")
+        static final class Assembly extends jdk.jfr.Event {
+            @jdk.jfr.Label("Source Length")
+            int sourceLength;
+
+            @jdk.jfr.Label("Instruction Count")
+            int instructionCount;
+
+            @jdk.jfr.Label("Succeeded")
+            boolean succeeded;
+
+            static Object start() {
+                Assembly event = new Assembly();
+                if (!event.isEnabled()) {
+                    return null;
+                }
+                event.begin();
+                return event;
+            }
+
+            static void finish(Object started, int sourceLength, Instruction[] program) {
+                Assembly event = (Assembly) started;
+                event.end();
+                if (event.shouldCommit()) {
+                    event.sourceLength = sourceLength;
+                    event.instructionCount = program != null ? program.length : 0;
+                    event.succeeded = program != null;
+                    event.commit();
+                }
+            }
+        }
+
+        @jdk.jfr.Name("com.github.fontoura.jramach.Run")
+        @jdk.jfr.Label("Machine Run")
+        @jdk.jfr.Category("jRAMach")
+        @jdk.jfr.Description("A call to Machine.run, from start to the reason it stopped.")
+        static final class Run extends jdk.jfr.Event {
+            @jdk.jfr.Label("Engine")
+            String engine;
+
+            @jdk.jfr.Label("Word Width")
+            String wordWidth;
+
+            @jdk.jfr.Label("Steps")
+            long steps;
+
+            @jdk.jfr.Label("Stop Reason")
+            String status;
+
+            @jdk.jfr.Label("Program Counter")
+            int programCounter;
+
+            @jdk.jfr.Label("Instructions Per Second")
+            long instructionsPerSecond;
+
+            static Object start() {
+                Run event = new Run();
+                if (!event.isEnabled()) {
+                    return null;
+                }
+                event.begin();
+                return event;
+            }
+
+            static void finish(Object started, Machine machine, long startTime, long steps, RunResult.Status status) {
+                Run event = (Run) started;
+                event.end();
+                if (event.shouldCommit()) {
+                    long elapsed = System.nanoTime() - startTime;
+                    event.engine = machine.getExecutionEngine().name();
+                    event.wordWidth = machine.getWordWidth().name();
+                    event.steps = steps;
+                    event.status = status.name();
+                    event.programCounter = machine.getProgramCounter();
+                    event.instructionsPerSecond = elapsed > 0 ? (long) (steps * 1e9 / elapsed) : 0;
+                    event.commit();
+                }
+            }
+        }
+
+        @jdk.jfr.Name("com.github.fontoura.jramach.Fault")
+        @jdk.jfr.Label("Machine Fault")
+        @jdk.jfr.Category("jRAMach")
+        @jdk.jfr.Description("A program stopped by a fault.")
+        static final class Fault extends jdk.jfr.Event {
+            @jdk.jfr.Label("Fault Code")
+            String faultCode;
+
+            @jdk.jfr.Label("Program Counter")
+            int programCounter;
+
+            @jdk.jfr.Label("Address")
+            long address;
+
+            @jdk.jfr.Label("Reason")
+            String reason;
+
+            static void emit(FaultCode faultCode, int programCounter, long address, String reason) {
+                Fault event = new Fault();
+                if (event.shouldCommit()) {
+                    event.faultCode = faultCode.name();
+                    event.programCounter = programCounter;
+                    event.address = address;
+                    event.reason = reason;
+                    event.commit();
+                }
+            }
+        }
+
+        @jdk.jfr.Name("com.github.fontoura.jramach.ExecutionSample")
+        @jdk.jfr.Label("Execution Sample")
+        @jdk.jfr.Category("jRAMach")
+        @jdk.jfr.Description("Where a running machine was, taken between slices of a long run.")
+        static final class ExecutionSample extends jdk.jfr.Event {
+            @jdk.jfr.Label("Program Counter")
+            int programCounter;
+
+            @jdk.jfr.Label("Step Count")
+            long stepCount;
+
+            static long emit(Machine machine, long lastSampleTime) {
+                ExecutionSample event = new ExecutionSample();
+                if (!event.isEnabled()) {
+                    return lastSampleTime;
+                }
+                long now = System.nanoTime();
+                if (now - lastSampleTime < SAMPLE_INTERVAL_NANOS) {
+                    return lastSampleTime;
+                }
+                event.programCounter = machine.getProgramCounter();
+                event.stepCount = machine.getStepCount();
+                event.commit();
+                return now;
+            }
+        }
+    }
+}
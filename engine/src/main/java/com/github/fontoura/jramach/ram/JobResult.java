@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+public final class JobResult {
+    private final RunResult.Status status;
+    private final long[] tape;
+    private final long accumulator;
+    private final long stepCount;
+    private final int programCounter;
+    private final FaultCode faultCode;
+    private final long faultAddress;
+
+    JobResult(RunResult.Status status, long[] tape, long accumulator, long stepCount, int programCounter, FaultCode faultCode, long faultAddress) {
+        this.status = status;
+        this.tape = tape;
+        this.accumulator = accumulator;
+        this.stepCount = stepCount;
+        this.programCounter = programCounter;
+        this.faultCode = faultCode;
+        this.faultAddress = faultAddress;
+    }
+
+    public RunResult.Status getStatus() {
+        return status;
+    }
+
+    public long[] getTape() {
+        return tape.clone();
+    }
+
+    public long getTape(int tapeAddress) {
+        return tape[tapeAddress];
+    }
+
+    public int getTapeLength() {
+        return tape.length;
+    }
+
+    public long getAccumulator() {
+        return accumulator;
+    }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    public FaultCode getFaultCode() {
+        return faultCode;
+    }
+
+    public long getFaultAddress() {
+        return faultAddress;
+    }
+
+    @Override
+    public String toString() {
+        return status + " after " + stepCount + " steps at line #" + programCounter;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+public final class Limits {
+    public static class Builder {
+        private int tapeLength;
+        private int registerCount = 16;
+        private long maxSteps = Long.MAX_VALUE;
+        private long timeoutMillis;
+        private WordWidth wordWidth = WordWidth.INT;
+        private ExecutionEngine executionEngine = ExecutionEngine.COMPILED;
+        private int parallelism;
+
+        public Builder() {}
+
+        // zero gives every job a tape exactly as long as its input.
+        public Builder tapeLength(int tapeLength) {
+            if (tapeLength < 0) {
+                throw new IllegalArgumentException("The tape length must not be negative!");
+            }
+            this.tapeLength = tapeLength;
+            return this;
+        }
+
+        public Builder registerCount(int registerCount) {
+            if (registerCount < 1) {
+                throw new IllegalArgumentException("There must be at least one register!");
+            }
+            this.registerCount = registerCount;
+            return this;
+        }
+
+        public Builder maxSteps(long maxSteps) {
+            if (maxSteps < 0) {
+                throw new IllegalArgumentException("The step budget must not be negative!");
+            }
+            this.maxSteps = maxSteps;
+            return this;
+        }
+
+        // zero means no deadline.
+        public Builder timeoutMillis(long timeoutMillis) {
+            if (timeoutMillis < 0) {
+                throw new IllegalArgumentException("The timeout must not be negative!");
+            }
+            this.timeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        public Builder wordWidth(WordWidth wordWidth) {
+            if (wordWidth == null || wordWidth == WordWidth.ARBITRARY) {
+                throw new IllegalArgumentException("Batch runs only support fixed width words!");
+            }
+            this.wordWidth = wordWidth;
+            return this;
+        }
+
+        public Builder executionEngine(ExecutionEngine executionEngine) {
+            if (executionEngine == null) {
+                throw new IllegalArgumentException("The execution engine must not be null!");
+            }
+            this.executionEngine = executionEngine;
+            return this;
+        }
+
+        // zero runs on the common pool.
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 0) {
+                throw new IllegalArgumentException("The parallelism must not be negative!");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Limits build() {
+            return new Limits(this);
+        }
+    }
+
+    private final int tapeLength;
+    private final int registerCount;
+    private final long maxSteps;
+    private final long timeoutMillis;
+    private final WordWidth wordWidth;
+    private final ExecutionEngine executionEngine;
+    private final int parallelism;
+
+    private Limits(Builder builder) {
+        this.tapeLength = builder.tapeLength;
+        this.registerCount = builder.registerCount;
+        this.maxSteps = builder.maxSteps;
+        this.timeoutMillis = builder.timeoutMillis;
+        this.wordWidth = builder.wordWidth;
+        this.executionEngine = builder.executionEngine;
+        this.parallelism = builder.parallelism;
+    }
+
+    public int getTapeLength() {
+        return tapeLength;
+    }
+
+    public int getRegisterCount() {
+        return registerCount;
+    }
+
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public WordWidth getWordWidth() {
+        return wordWidth;
+    }
+
+    public ExecutionEngine getExecutionEngine() {
+        return executionEngine;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+}
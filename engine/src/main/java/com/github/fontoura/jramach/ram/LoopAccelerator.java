@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram;
+
+final class LoopAccelerator {
+    private static final int INVARIANT = 0;
+    private static final int INDUCTION = 1;
+    private static final int DEPENDENT = 2;
+
+    private final Loop[] loops;
+
+    private LoopAccelerator(Loop[] loops) {
+        this.loops = loops;
+    }
+
+    static LoopAccelerator analyze(DecodedProgram program) {
+        Loop[] loops = new Loop[program.length()];
+        for (BasicBlock block : program.getAnalysis().basicBlocks()) {
+            loops[block.getFirstProgramCounter() - 1] = Loop.analyze(program, block.getFirstProgramCounter() - 1, block.getLastProgramCounter() - 1);
+        }
+        return new LoopAccelerator(loops);
+    }
+
+    boolean isLoop(int index) {
+        return loops[index] != null;
+    }
+
+    long accelerate(int index, long[] registers, long maxSteps) {
+        Loop loop = loops[index];
+        if (loop == null) {
+            return 0;
+        }
+        return loop.accelerate(registers, maxSteps);
+    }
+
+    /*
+     * A block which jumps back to itself on JZERO/JPOS and only moves values between registers. Each register
+     * ends an iteration either untouched (invariant), incremented by a loop-invariant amount (induction), or
+     * recomputed from invariant and induction registers alone (dependent), so the state after any number of
+     * iterations has a closed form.
+     */
+    private static class Loop {
+        private final int length;
+        private final int width;
+        private final int[] kinds;
+        private final Term[] terms;
+        private final Term test;
+        private final int testRegister;
+        private final boolean jumpsOnZero;
+
+        private Loop(int length, int width, int[] kinds, Term[] terms, Term test, int testRegister, boolean jumpsOnZero) {
+            this.length = length;
+            this.width = width;
+            this.kinds = kinds;
+            this.terms = terms;
+            this.test = test;
+            this.testRegister = testRegister;
+            this.jumpsOnZero = jumpsOnZero;
+        }
+
+        static Loop analyze(DecodedProgram program, int first, int last) {
+            int jump = program.opcodes[last];
+            if ((jump != DecodedProgram.OP_JZERO && jump != DecodedProgram.OP_JPOS) || program.operands[last] != first + 1) {
+                return null;
+            }
+
+            int width = 1;
+            for (int i = first; i < last; i ++) {
+                if (program.operandKinds[i] == DecodedProgram.KIND_REGISTER) {
+                    if (program.operands[i] < 0) {
+                        return null;
+                    }
+                    width = Math.max(width, (int) program.operands[i] + 1);
+                }
+            }
+
+            // run one iteration symbolically, in terms of the register values at the start of the iteration.
+            Term[] current = new Term[width];
+            for (int r = 0; r < width; r ++) {
+                current[r] = Term.register(width, r);
+            }
+            for (int i = first; i < last; i ++) {
+                int operand = (int) program.operands[i];
+                Term value = program.operandKinds[i] == DecodedProgram.KIND_REGISTER ? current[operand] : Term.constant(width, operand);
+                switch (program.opcodes[i]) {
+                case DecodedProgram.OP_NOP:
+                    break;
+                case DecodedProgram.OP_LOAD:
+                    current[0] = value;
+                    break;
+                case DecodedProgram.OP_STORE:
+                    current[operand] = current[0];
+                    break;
+                case DecodedProgram.OP_ADD:
+                    if (current[0].clamped || value.clamped) {
+                        return null;
+                    }
+                    current[0] = current[0].plus(value, 1, false);
+                    break;
+                case DecodedProgram.OP_SUB:
+                    if (current[0].clamped || value.clamped) {
+                        return null;
+                    }
+                    current[0] = current[0].plus(value, -1, true);
+                    break;
+                default:
+                    return null;
+                }
+            }
+
+            int[] kinds = new int[width];
+            for (int r = 0; r < width; r ++) {
+                kinds[r] = current[r].isRegister(r) ? INVARIANT : DEPENDENT;
+            }
+            boolean[] induction = new boolean[width];
+            for (int r = 0; r < width; r ++) {
+                induction[r] = kinds[r] == DEPENDENT && current[r].coefficients[r] == 1 && !current[r].references(kinds, DEPENDENT, r);
+            }
+            for (int r = 0; r < width; r ++) {
+                if (induction[r]) {
+                    kinds[r] = INDUCTION;
+                }
+            }
+            for (int r = 0; r < width; r ++) {
+                if (kinds[r] == DEPENDENT && (current[r].coefficients[r] != 0 || current[r].references(kinds, DEPENDENT, r))) {
+                    return null;
+                }
+            }
+
+            // the exit test must follow a single induction register.
+            Term test = current[0];
+            int testRegister = -1;
+            for (int r = 0; r < width; r ++) {
+                if (test.coefficients[r] != 0 && kinds[r] != INVARIANT) {
+                    if (testRegister >= 0 || kinds[r] != INDUCTION || test.coefficients[r] != 1) {
+                        return null;
+                    }
+                    testRegister = r;
+                }
+            }
+            if (testRegister < 0) {
+                return null;
+            }
+
+            return new Loop(last - first + 1, width, kinds, current, test, testRegister, jump == DecodedProgram.OP_JZERO);
+        }
+
+        long accelerate(long[] cells, long maxSteps) {
+            if (width > cells.length) {
+                return 0;
+            }
+            long limit = maxSteps / length;
+
+            // loops are only accelerated on 32-bit machines, so every value fits in an int.
+            int[] registers = new int[width];
+            for (int r = 0; r < width; r ++) {
+                registers[r] = (int) cells[r];
+            }
+
+            int[] deltas = new int[width];
+            for (int r = 0; r < width; r ++) {
+                if (kinds[r] == INDUCTION) {
+                    deltas[r] = terms[r].evaluate(registers, r);
+                    if (terms[r].clamped && r != testRegister && (registers[r] < 0 || deltas[r] > 0)) {
+                        return 0;
+                    }
+                }
+            }
+
+            // keep to the iterations where the test register and the test value can't overflow, so that the
+            // sequence of test values is monotonic and may be searched for the exit.
+            int start = registers[testRegister];
+            int delta = deltas[testRegister];
+            int offset = test.evaluate(registers, testRegister);
+            boolean saturating = terms[testRegister].clamped && delta <= 0;
+            if (terms[testRegister].clamped && start < 0) {
+                return 0;
+            }
+            if (saturating) {
+                if ((long) start + offset > Integer.MAX_VALUE) {
+                    return 0;
+                }
+            } else {
+                long low = Math.max(Integer.MIN_VALUE, (long) Integer.MIN_VALUE - offset);
+                long high = Math.min(Integer.MAX_VALUE, (long) Integer.MAX_VALUE - offset);
+                if (start < low || start > high) {
+                    return 0;
+                }
+                if (delta > 0) {
+                    limit = Math.min(limit, (high - start) / delta);
+                } else if (delta < 0) {
+                    limit = Math.min(limit, (start - low) / -(long) delta);
+                }
+            }
+            if (limit == 0) {
+                return 0;
+            }
+
+            // find the first iteration whose test leaves the loop. Once the first test passes, the tests keep
+            // passing up to that point, as the test values only move in one direction.
+            long low = 0;
+            long high = limit;
+            if (repeats(start, delta, offset, saturating, 0)) {
+                low = 1;
+                while (low < high) {
+                    long middle = (low + high) >>> 1;
+                    if (repeats(start, delta, offset, saturating, middle)) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+            }
+            long iterations = low < limit ? low + 1 : limit;
+
+            // dependent registers are computed from the state at the start of the last iteration.
+            int[] state = new int[width];
+            for (int r = 0; r < width; r ++) {
+                state[r] = kinds[r] == INDUCTION ? advance(registers[r], deltas[r], terms[r].clamped, iterations - 1) : registers[r];
+            }
+            for (int r = 0; r < width; r ++) {
+                if (kinds[r] == DEPENDENT) {
+                    registers[r] = terms[r].evaluate(state, -1);
+                } else if (kinds[r] == INDUCTION) {
+                    registers[r] = advance(registers[r], deltas[r], terms[r].clamped, iterations);
+                }
+                cells[r] = registers[r];
+            }
+            return iterations * length;
+        }
+
+        private boolean repeats(int start, int delta, int offset, boolean saturating, long iteration) {
+            long value = (saturating ? saturate(start, delta, iteration) : start + iteration * delta) + offset;
+            if (test.clamped) {
+                value = Math.max(0, value);
+            }
+            return jumpsOnZero ? value == 0 : value > 0;
+        }
+
+        private static int advance(int start, int delta, boolean clamped, long iterations) {
+            if (clamped && delta < 0) {
+                return (int) saturate(start, delta, iterations);
+            }
+            return (int) (start + iterations * delta);
+        }
+
+        private static long saturate(int start, int delta, long iterations) {
+            if (delta == 0 || iterations <= start / -(long) delta) {
+                return start + iterations * delta;
+            }
+            return 0;
+        }
+    }
+
+    /*
+     * A register value as a linear combination of the values at the start of an iteration, optionally
+     * clamped at zero by a final SUB. Arithmetic wraps just like the machine does.
+     */
+    private static class Term {
+        private final int constant;
+        private final int[] coefficients;
+        private final boolean clamped;
+
+        private Term(int constant, int[] coefficients, boolean clamped) {
+            this.constant = constant;
+            this.coefficients = coefficients;
+            this.clamped = clamped;
+        }
+
+        static Term constant(int width, int value) {
+            return new Term(value, new int[width], false);
+        }
+
+        static Term register(int width, int register) {
+            int[] coefficients = new int[width];
+            coefficients[register] = 1;
+            return new Term(0, coefficients, false);
+        }
+
+        Term plus(Term other, int sign, boolean clamped) {
+            int[] coefficients = this.coefficients.clone();
+            for (int r = 0; r < coefficients.length; r ++) {
+                coefficients[r] += sign * other.coefficients[r];
+            }
+            return new Term(constant + sign * other.constant, coefficients, clamped);
+        }
+
+        boolean isRegister(int register) {
+            if (constant != 0 || clamped) {
+                return false;
+            }
+            for (int r = 0; r < coefficients.length; r ++) {
+                if (coefficients[r] != (r == register ? 1 : 0)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean references(int[] kinds, int kind, int self) {
+            for (int r = 0; r < coefficients.length; r ++) {
+                if (r != self && coefficients[r] != 0 && kinds[r] == kind) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int evaluate(int[] values, int skipped) {
+            int value = constant;
+            for (int r = 0; r < coefficients.length; r ++) {
+                if (r != skipped) {
+                    value += coefficients[r] * values[r];
+                }
+            }
+            return clamped && skipped < 0 ? Math.max(0, value) : value;
+        }
+    }
+}
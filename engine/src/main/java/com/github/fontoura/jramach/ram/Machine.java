@@ -23,17 +23,57 @@
 
 package com.github.fontoura.jramach.ram;
 
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 import com.github.fontoura.jramach.ram.exceptions.IllegalMachineOperationException;
+import com.github.fontoura.jramach.ram.jit.BytecodeCompiler;
+import com.github.fontoura.jramach.ram.jit.CompiledProgram;
 
 public class Machine {
-    private int[] tape;
-    private int[] registers;
+    // with arbitrary precision, a cell holding this marker has its actual value in a side table.
+    private static final long BIG_VALUE = Long.MIN_VALUE;
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+
+    // passing this as the deadline of a run leaves only the step budget.
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final MachineMetrics METRICS = MachineMetrics.getInstance();
+
+    // long runs are cut into slices of this many steps, and cancellation and the deadline are checked in between.
+    private static final long CHECK_INTERVAL = 1L << 16;
+
+    private final WordWidth wordWidth;
+    private final boolean narrow;
+    private final boolean arbitrary;
+    private final Tape tape;
+    private long[] registers;
+    private final Map<Integer, BigInteger> bigTape = new HashMap<Integer, BigInteger>();
+    private final Map<Integer, BigInteger> bigRegisters = new HashMap<Integer, BigInteger>();
 
     private Instruction[] program;
+    private DecodedProgram decodedProgram;
+    private CompiledProgram compiledProgram;
+    private boolean compilationAttempted;
+    private final int[] compiledState = new int[2];
+    private ExecutionEngine executionEngine;
     private int programCounter;
 
     private boolean shouldIncrementProgramCounter;
     private boolean halted;
+    private boolean faulted;
+    private FaultCode faultCode;
+    private int faultProgramCounter;
+    private long faultAddress;
+    private String faultReason;
+    private FaultListener faultListener;
+    private MachineListener[] listeners = new MachineListener[0];
+    private int[] listenerMasks = new int[0];
+    // the event kinds at least one listener wants; while it is zero no event is ever created.
+    private int listenerMask;
+    private long stepCount;
 
     private boolean accumulatorHasBeenRead;
     private int lastReadRegisterNumber;
@@ -42,40 +82,92 @@ public class Machine {
     private int lastChangedRegisterNumber;
     private int lastChangedTapeAddress;
     private boolean runningInstruction;
+    private boolean tracking;
+    private boolean loopAcceleration;
+    private UndoLog undoLog;
+    private Profiler profiler;
+    private volatile boolean cancelled;
+    private boolean yielding;
+    // steps an accelerated loop may run past the end of the current slice, so long trips aren't cut at every
+    // slice boundary. only run sets it, and only while every step needn't be seen on its own.
+    private long overrun;
+    private long lastSampleTime = System.nanoTime();
 
     public Machine(int tapeLength, int registerCount) {
-        if (tapeLength < 0) {
-            throw new IllegalArgumentException("The tape length must not be negative!");
+        this(tapeLength, registerCount, true);
+    }
+
+    public Machine(int tapeLength, int registerCount, boolean tracking) {
+        this(tapeLength, registerCount, tracking, WordWidth.INT);
+    }
+
+    public Machine(int tapeLength, int registerCount, WordWidth wordWidth) {
+        this(tapeLength, registerCount, true, wordWidth);
+    }
+
+    public Machine(int tapeLength, int registerCount, boolean tracking, WordWidth wordWidth) {
+        this(tapeLength, registerCount, tracking, wordWidth, TapeStorage.DENSE);
+    }
+
+    public Machine(int tapeLength, int registerCount, boolean tracking, WordWidth wordWidth, TapeStorage tapeStorage) {
+        this(tapeStorage.create(tapeLength), registerCount, tracking, wordWidth);
+    }
+
+    public Machine(Tape tape, int registerCount, boolean tracking, WordWidth wordWidth) {
+        if (tape == null) {
+            throw new IllegalArgumentException("The tape must not be null!");
         }
         if (registerCount < 1) {
             throw new IllegalArgumentException("There must be at least one register!");
         }
+        if (wordWidth == null) {
+            throw new IllegalArgumentException("The word width must not be null!");
+        }
+        if (!tape.canHold(wordWidth)) {
+            throw new IllegalArgumentException("The tape cells are too narrow for " + wordWidth.toString().toLowerCase() + " words!");
+        }
 
-        accumulatorHasBeenRead = false;
-        lastReadRegisterNumber = -1;
-        lastReadTapeAddress = -1;
-        accumulatorHasBeenChanged = false;
-        lastChangedRegisterNumber = -1;
-        lastChangedTapeAddress = -1;
+        clearTracking();
 
-        tape = new int[tapeLength];
-        registers = new int[registerCount + 1];
+        this.wordWidth = wordWidth;
+        this.narrow = wordWidth == WordWidth.INT;
+        this.arbitrary = wordWidth == WordWidth.ARBITRARY;
+        this.tape = tape;
+        registers = new long[registerCount + 1];
 
         programCounter = 1;
         runningInstruction = false;
+        this.tracking = tracking;
+        executionEngine = ExecutionEngine.INTERPRETED;
     }
 
     public void setProgram(Instruction[] program) {
-        this.program = program;
+        setProgram(DecodedProgram.decode(program));
+    }
+
+    // programs naming registers the machine doesn't have are turned away here, so the engines never meet them.
+    public void setProgram(DecodedProgram program) {
+        program.checkRegisters(registers.length);
+        clearUndoLog();
+        this.program = program.instructions;
+        this.decodedProgram = program;
+        this.compiledProgram = null;
+        this.compilationAttempted = false;
+    }
+
+    public ExecutionEngine getExecutionEngine() {
+        return executionEngine;
+    }
+
+    public void setExecutionEngine(ExecutionEngine executionEngine) {
+        if (executionEngine == null) {
+            throw new IllegalArgumentException("The execution engine must not be null!");
+        }
+        this.executionEngine = executionEngine;
     }
 
     public void nextInstruction() {
-        accumulatorHasBeenRead = false;
-        lastReadRegisterNumber = -1;
-        lastReadTapeAddress = -1;
-        accumulatorHasBeenChanged = false;
-        lastChangedRegisterNumber = -1;
-        lastChangedTapeAddress = -1;
+        clearTracking();
 
         try {
             runningInstruction = true;
@@ -83,69 +175,1121 @@ public class Machine {
             if (halted) {
                 return;
             }
+            METRICS.instructionsExecuted(execute(1));
+            if (halted && !faulted) {
+                METRICS.countStatus(RunResult.Status.HALTED);
+            }
+        } finally {
+            runningInstruction = false;
+        }
+    }
+
+    public RunResult run(long maxSteps) {
+        return run(maxSteps, NO_DEADLINE);
+    }
+
+    // the deadline is a System.nanoTime() value, or NO_DEADLINE.
+    public RunResult run(long maxSteps, long deadline) {
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("The step budget must not be negative!");
+        }
+        clearTracking();
+
+        Object runEvent = JfrEvents.AVAILABLE ? JfrEvents.startRun() : null;
+        long startTime = runEvent != null ? System.nanoTime() : 0;
+
+        long tapeCellsInUse = tape.getCellsInUse();
+        METRICS.runStarted(tapeCellsInUse);
+
+        long steps = 0;
+        RunResult.Status status = null;
+        try {
+            runningInstruction = true;
+            while (!halted) {
+                if (JfrEvents.AVAILABLE && steps > 0) {
+                    lastSampleTime = JfrEvents.sample(this, lastSampleTime);
+                }
+                if (cancelled) {
+                    status = RunResult.Status.CANCELLED;
+                    break;
+                }
+                if (deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0) {
+                    status = RunResult.Status.DEADLINE_EXCEEDED;
+                    break;
+                }
+                if (steps >= maxSteps) {
+                    break;
+                }
+                long slice = Math.min(maxSteps - steps, CHECK_INTERVAL);
+                overrun = undoLog == null && listenerMask == 0 ? maxSteps - steps - slice : 0;
+                long executed = execute(slice);
+                METRICS.instructionsExecuted(executed);
+                steps += executed;
+                // paged tapes take up more cells as they are written, so the gauge is brought up to date after every slice.
+                long cellsInUse = tape.getCellsInUse();
+                if (cellsInUse != tapeCellsInUse) {
+                    METRICS.tapeCellsChanged(cellsInUse - tapeCellsInUse);
+                    tapeCellsInUse = cellsInUse;
+                }
+                if (executed < slice) {
+                    break;
+                }
+                if (yielding) {
+                    Thread.yield();
+                }
+            }
+        } finally {
+            runningInstruction = false;
+            overrun = 0;
+            METRICS.runEnded(tapeCellsInUse);
+        }
+
+        if (status == RunResult.Status.CANCELLED) {
+            // the request is used up, so the machine can be run again.
+            cancelled = false;
+        } else if (faulted) {
+            status = RunResult.Status.FAULTED;
+        } else if (halted) {
+            status = RunResult.Status.HALTED;
+        } else if (status == null) {
+            status = RunResult.Status.BUDGET_EXHAUSTED;
+        }
+        METRICS.countStatus(status);
+        if (runEvent != null) {
+            JfrEvents.finishRun(runEvent, this, startTime, steps, status);
+        }
+        return new RunResult(status, steps, programCounter);
+    }
+
+    // may be called from any thread; the running (or next) run stops at its next check.
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelled;
+    }
+
+    public boolean isYielding() {
+        return yielding;
+    }
+
+    // when set, long runs give up their thread between slices, so runs sharing a few threads (virtual ones in particular) take turns.
+    public void setYielding(boolean yielding) {
+        this.yielding = yielding;
+    }
+
+    public RunResult runUntilHalt() {
+        return run(Long.MAX_VALUE);
+    }
+
+    private long execute(long maxSteps) {
+        if (listenerMask != 0) {
+            return executeObserved(maxSteps);
+        }
+        return executeUnobserved(maxSteps);
+    }
+
+    private long executeUnobserved(long maxSteps) {
+        if (undoLog != null) {
+            return executeLogged(maxSteps);
+        }
+        long steps = executeEngine(maxSteps);
+        stepCount += steps;
+        return steps;
+    }
+
+    // runs one step at a time with tracking on, and turns what each step touched into events.
+    private long executeObserved(long maxSteps) {
+        final DecodedProgram decodedProgram = getDecodedProgram();
+        final boolean tracking = this.tracking;
+        this.tracking = true;
+        long steps = 0;
+        try {
+            while (steps < maxSteps && !halted) {
+                int pc = programCounter;
+                long accumulator = registers[0];
+                BigInteger bigAccumulator = bigCell(accumulator, bigRegisters, 0);
+
+                // like the undo log, instruction types the decoder doesn't know are assumed to only change the accumulator.
+                int index = pc - 1;
+                int written = -1;
+                long writtenValue = 0;
+                BigInteger bigWrittenValue = null;
+                if (index < decodedProgram.opcodes.length) {
+                    long operand = decodedProgram.operands[index];
+                    if (decodedProgram.opcodes[index] == DecodedProgram.OP_STORE) {
+                        written = (int) operand;
+                        writtenValue = registers[written];
+                        bigWrittenValue = bigCell(writtenValue, bigRegisters, written);
+                    } else if (decodedProgram.opcodes[index] == DecodedProgram.OP_WRITE) {
+                        long address = decodedProgram.operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+                        if (address >= 0 && address < tape.getLength()) {
+                            written = (int) address;
+                            writtenValue = tape.get(written);
+                            bigWrittenValue = bigCell(writtenValue, bigTape, written);
+                        }
+                    }
+                }
+
+                clearTracking();
+                long executed = executeUnobserved(1);
+                if (executed == 0) {
+                    break;
+                }
+                steps += executed;
+
+                if (accumulatorHasBeenRead) {
+                    publish(MachineEvent.ACCUMULATOR_READ, -1, accumulator, bigAccumulator, accumulator, bigAccumulator);
+                }
+                if (lastReadRegisterNumber >= 0) {
+                    // register zero is the accumulator, which the step may have changed since reading it.
+                    long value = lastReadRegisterNumber == 0 ? accumulator : registers[lastReadRegisterNumber];
+                    BigInteger bigValue = lastReadRegisterNumber == 0 ? bigAccumulator : bigCell(value, bigRegisters, lastReadRegisterNumber);
+                    publish(MachineEvent.REGISTER_READ, lastReadRegisterNumber, value, bigValue, value, bigValue);
+                }
+                if (lastReadTapeAddress >= 0) {
+                    long value = tape.get(lastReadTapeAddress);
+                    BigInteger bigValue = bigCell(value, bigTape, lastReadTapeAddress);
+                    publish(MachineEvent.TAPE_READ, lastReadTapeAddress, value, bigValue, value, bigValue);
+                }
+                if (accumulatorHasBeenChanged) {
+                    publish(MachineEvent.ACCUMULATOR_WRITTEN, -1, accumulator, bigAccumulator, registers[0], bigCell(registers[0], bigRegisters, 0));
+                }
+                if (lastChangedRegisterNumber >= 0 && lastChangedRegisterNumber == written) {
+                    long value = registers[written];
+                    publish(MachineEvent.REGISTER_WRITTEN, written, writtenValue, bigWrittenValue, value, bigCell(value, bigRegisters, written));
+                }
+                if (lastChangedTapeAddress >= 0 && lastChangedTapeAddress == written) {
+                    long value = tape.get(written);
+                    publish(MachineEvent.TAPE_WRITTEN, written, writtenValue, bigWrittenValue, value, bigCell(value, bigTape, written));
+                }
+                if (programCounter != pc) {
+                    publish(MachineEvent.PROGRAM_COUNTER_MOVED, -1, pc, null, programCounter, null);
+                }
+            }
+        } finally {
+            this.tracking = tracking;
+            if (!tracking) {
+                clearTracking();
+            }
+        }
+        return steps;
+    }
+
+    private void publish(int kind, int index, long oldValue, BigInteger bigOldValue, long newValue, BigInteger bigNewValue) {
+        if ((listenerMask & kind) == 0) {
+            return;
+        }
+        MachineEvent event = new MachineEvent(this, kind, index, oldValue, bigOldValue, newValue, bigNewValue);
+        final MachineListener[] listeners = this.listeners;
+        final int[] listenerMasks = this.listenerMasks;
+        for (int i = 0; i < listeners.length; i ++) {
+            if ((listenerMasks[i] & kind) != 0) {
+                listeners[i].machineChanged(event);
+            }
+        }
+    }
+
+    private long executeLogged(long maxSteps) {
+        final UndoLog undoLog = this.undoLog;
+
+        // every step is run on its own, after noting what it is about to overwrite.
+        long steps = 0;
+        while (steps < maxSteps && !halted) {
+            if (tape.canCheckpoint() && undoLog.wantsCheckpoint(stepCount)) {
+                undoLog.addCheckpoint(checkpoint());
+            }
+            logStep(undoLog);
+            long executed;
+            try {
+                executed = executeEngine(1);
+            } catch (RuntimeException e) {
+                undoLog.pop();
+                throw e;
+            }
+            if (executed == 0) {
+                undoLog.pop();
+                break;
+            }
+            stepCount += executed;
+            steps += executed;
+        }
+        return steps;
+    }
+
+    private void logStep(UndoLog undoLog) {
+        final DecodedProgram decodedProgram = getDecodedProgram();
+        int index = programCounter - 1;
+        if (index >= decodedProgram.opcodes.length) {
+            undoLog.push(programCounter, UndoLog.TARGET_NONE, 0, 0, null);
+            return;
+        }
+        long operand = decodedProgram.operands[index];
+        switch (decodedProgram.opcodes[index]) {
+        case DecodedProgram.OP_NOP:
+        case DecodedProgram.OP_JZERO:
+        case DecodedProgram.OP_JPOS:
+        case DecodedProgram.OP_JUMP:
+        case DecodedProgram.OP_HALT:
+            undoLog.push(programCounter, UndoLog.TARGET_NONE, 0, 0, null);
+            break;
+        case DecodedProgram.OP_STORE:
+            int registerNumber = (int) operand;
+            undoLog.push(programCounter, UndoLog.TARGET_REGISTER, registerNumber, registers[registerNumber], bigCell(registers[registerNumber], bigRegisters, registerNumber));
+            break;
+        case DecodedProgram.OP_WRITE:
+            long address = decodedProgram.operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+            if (address < 0 || address >= tape.getLength()) {
+                undoLog.push(programCounter, UndoLog.TARGET_NONE, 0, 0, null);
+            } else {
+                long value = tape.get((int) address);
+                undoLog.push(programCounter, UndoLog.TARGET_TAPE, (int) address, value, bigCell(value, bigTape, (int) address));
+            }
+            break;
+        default:
+            // everything else (including instruction types the decoder doesn't know) only changes the accumulator.
+            undoLog.push(programCounter, UndoLog.TARGET_ACCUMULATOR, 0, registers[0], bigCell(registers[0], bigRegisters, 0));
+            break;
+        }
+    }
+
+    private BigInteger bigCell(long cell, Map<Integer, BigInteger> bigCells, int index) {
+        return arbitrary && cell == BIG_VALUE ? bigCells.get(index) : null;
+    }
+
+    private long executeEngine(long maxSteps) {
+        if (profiler != null) {
+            return executeProfiled(maxSteps);
+        }
+        return executeUnprofiled(maxSteps);
+    }
+
+    private long executeUnprofiled(long maxSteps) {
+        if (arbitrary) {
+            // values that outgrow a long are only handled by this loop, whatever the engine.
+            return executeArbitrary(maxSteps);
+        } else if (executionEngine == ExecutionEngine.COMPILED) {
+            return executeCompiled(maxSteps);
+        } else if (executionEngine == ExecutionEngine.DECODED) {
+            return executeDecoded(maxSteps);
+        } else {
+            return executeInterpreted(maxSteps);
+        }
+    }
+
+    private DecodedProgram getDecodedProgram() {
+        if (decodedProgram == null) {
+            decodedProgram = DecodedProgram.decode(program);
+        }
+        return decodedProgram;
+    }
+
+    private long executeCompiled(long maxSteps) {
+        if (!compilationAttempted) {
+            compilationAttempted = true;
+            compiledProgram = getDecodedProgram().getCompiledProgram(registers.length, wordWidth);
+        }
+        // the compiled code does not track reads and writes, and single steps are not worth entering it.
+        final long[] denseTape = tape instanceof ArrayTape ? ((ArrayTape) tape).cells : null;
+        if (compiledProgram == null || tracking || maxSteps == 1 || denseTape == null) {
+            return executeDecoded(maxSteps);
+        }
+
+        final int[] state = compiledState;
+        long steps = 0;
+        while (steps < maxSteps && !halted) {
+            state[BytecodeCompiler.STATE_PROGRAM_COUNTER] = programCounter;
+            state[BytecodeCompiler.STATE_HALTED] = 0;
+            steps += compiledProgram.execute(registers, denseTape, state, maxSteps - steps);
+            if (state[BytecodeCompiler.STATE_HALTED] != 0) {
+                halted = true;
+                programCounter = 1;
+                break;
+            }
+            programCounter = state[BytecodeCompiler.STATE_PROGRAM_COUNTER];
             if (programCounter > program.length) {
                 halted = true;
                 programCounter = 1;
-            } else {
+                break;
+            }
+            // the compiled code stops before faults, partial blocks and anything it can't run itself.
+            if (steps < maxSteps) {
+                steps += executeDecoded(1);
+            }
+        }
+        return steps;
+    }
+
+    // runs on the decoded engine's block loop, which counts into the profiler's arrays as it goes.
+    private long executeProfiled(long maxSteps) {
+        profiler.prepare(getDecodedProgram());
+        return executeDecoded(maxSteps, profiler);
+    }
+
+    // for instructions left to the other engines, where they touch the tape and which way they branch is worked out beforehand.
+    private void profileInstruction(Profiler profiler, int index, int opcode, int operandKind, long operand) {
+        long address = operandKind == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+        switch (opcode) {
+        case DecodedProgram.OP_READ:
+            if (address >= 0 && address < tape.getLength()) {
+                profiler.countRead((int) address);
+            }
+            break;
+        case DecodedProgram.OP_WRITE:
+            if (address >= 0 && address < tape.getLength()) {
+                profiler.countWrite((int) address);
+            }
+            break;
+        case DecodedProgram.OP_JZERO:
+            profiler.countBranch(index, registers[0] == 0);
+            break;
+        case DecodedProgram.OP_JPOS:
+            profiler.countBranch(index, registers[0] != BIG_VALUE || !arbitrary ? registers[0] > 0 : bigRegisters.get(0).signum() > 0);
+            break;
+        }
+    }
+
+    private long executeInterpreted(long maxSteps) {
+        final Instruction[] program = this.program;
+
+        long steps = 0;
+        while (steps < maxSteps) {
+            if (programCounter > program.length) {
+                halted = true;
+                programCounter = 1;
+                break;
+            }
+            shouldIncrementProgramCounter = true;
+            steps ++;
+            try {
+                program[programCounter - 1].execute(this);
+            } catch (IllegalMachineOperationException e) {
+                recordFault(FaultCode.ILLEGAL_OPERATION, -1, e.getMessage());
+                break;
+            }
+            if (halted) {
+                break;
+            }
+            if (shouldIncrementProgramCounter) {
+                programCounter ++;
+            }
+            if (programCounter > program.length) {
+                halted = true;
+                programCounter = 1;
+                break;
+            }
+        }
+        return steps;
+    }
+
+    private long executeArbitrary(long maxSteps) {
+        final DecodedProgram decodedProgram = getDecodedProgram();
+        final int[] opcodes = decodedProgram.opcodes;
+        final int[] operandKinds = decodedProgram.operandKinds;
+        final long[] operands = decodedProgram.operands;
+        final long[] registers = this.registers;
+        final Tape tape = this.tape;
+        final int tapeLength = tape.getLength();
+
+        // values stay in longs until they overflow; only then are they moved to the BigInteger side tables.
+        long steps = 0;
+        while (steps < maxSteps) {
+            if (programCounter > opcodes.length) {
+                halted = true;
+                programCounter = 1;
+                break;
+            }
+            int index = programCounter - 1;
+            long operand = operands[index];
+            boolean register = operandKinds[index] == DecodedProgram.KIND_REGISTER;
+            long value = register ? registers[(int) operand] : operand;
+            long result;
+            shouldIncrementProgramCounter = true;
+            steps ++;
+            if (register && tracking && opcodes[index] != DecodedProgram.OP_STORE) {
+                lastReadRegisterNumber = (int) operand;
+            }
+            switch (opcodes[index]) {
+            case DecodedProgram.OP_NOP:
+                break;
+            case DecodedProgram.OP_ADD:
+                result = registers[0] + value;
+                if (registers[0] != BIG_VALUE && value != BIG_VALUE && ((registers[0] ^ result) & (value ^ result)) >= 0 && result != BIG_VALUE) {
+                    registers[0] = result;
+                } else {
+                    BigInteger big = register ? getBigValue(value, bigRegisters, (int) operand) : BigInteger.valueOf(operand);
+                    registers[0] = storeBigValue(registers[0], bigRegisters, 0, getBigValue(registers[0], bigRegisters, 0).add(big));
+                }
+                if (tracking) {
+                    accumulatorHasBeenRead = true;
+                    accumulatorHasBeenChanged = true;
+                }
+                break;
+            case DecodedProgram.OP_SUB:
+                result = registers[0] - value;
+                if (registers[0] != BIG_VALUE && value != BIG_VALUE && ((registers[0] ^ value) & (registers[0] ^ result)) >= 0) {
+                    registers[0] = Math.max(0, result);
+                } else {
+                    BigInteger big = register ? getBigValue(value, bigRegisters, (int) operand) : BigInteger.valueOf(operand);
+                    big = getBigValue(registers[0], bigRegisters, 0).subtract(big);
+                    registers[0] = storeBigValue(registers[0], bigRegisters, 0, big.signum() < 0 ? BigInteger.ZERO : big);
+                }
+                if (tracking) {
+                    accumulatorHasBeenRead = true;
+                    accumulatorHasBeenChanged = true;
+                }
+                break;
+            case DecodedProgram.OP_HALF:
+                if (registers[0] != BIG_VALUE) {
+                    registers[0] = registers[0] / 2;
+                } else {
+                    registers[0] = storeBigValue(registers[0], bigRegisters, 0, bigRegisters.get(0).divide(TWO));
+                }
+                if (tracking) {
+                    accumulatorHasBeenRead = true;
+                    accumulatorHasBeenChanged = true;
+                }
+                break;
+            case DecodedProgram.OP_LOAD:
+                if (register) {
+                    registers[0] = copyValue(value, bigRegisters, (int) operand, registers[0], bigRegisters, 0);
+                } else {
+                    registers[0] = storeValue(registers[0], bigRegisters, 0, operand);
+                }
+                if (tracking) {
+                    accumulatorHasBeenChanged = true;
+                }
+                break;
+            case DecodedProgram.OP_STORE:
+                registers[(int) operand] = copyValue(registers[0], bigRegisters, 0, registers[(int) operand], bigRegisters, (int) operand);
+                if (tracking) {
+                    accumulatorHasBeenRead = true;
+                    lastChangedRegisterNumber = (int) operand;
+                }
+                break;
+            case DecodedProgram.OP_READ:
+                if (value < 0 || value >= tapeLength) {
+                    decodedFault(index, FaultCode.TAPE_READ_OUT_OF_BOUNDS, value);
+                    return steps;
+                }
+                registers[0] = copyValue(tape.get((int) value), bigTape, (int) value, registers[0], bigRegisters, 0);
+                if (tracking) {
+                    lastReadTapeAddress = (int) value;
+                    accumulatorHasBeenChanged = true;
+                }
+                break;
+            case DecodedProgram.OP_WRITE:
+                if (tracking) {
+                    accumulatorHasBeenRead = true;
+                }
+                if (value < 0 || value >= tapeLength) {
+                    decodedFault(index, FaultCode.TAPE_WRITE_OUT_OF_BOUNDS, value);
+                    return steps;
+                }
+                tape.set((int) value, copyValue(registers[0], bigRegisters, 0, tape.get((int) value), bigTape, (int) value));
+                if (tracking) {
+                    lastChangedTapeAddress = (int) value;
+                }
+                break;
+            case DecodedProgram.OP_JZERO:
+                if (tracking) {
+                    accumulatorHasBeenRead = true;
+                }
+                if (registers[0] == 0) {
+                    setProgramCounter((int) operand);
+                }
+                break;
+            case DecodedProgram.OP_JPOS:
+                if (tracking) {
+                    accumulatorHasBeenRead = true;
+                }
+                if (registers[0] != BIG_VALUE ? registers[0] > 0 : bigRegisters.get(0).signum() > 0) {
+                    setProgramCounter((int) operand);
+                }
+                break;
+            case DecodedProgram.OP_JUMP:
+                setProgramCounter((int) operand);
+                break;
+            case DecodedProgram.OP_HALT:
+                halt();
+                break;
+            default:
                 try {
-                    program[programCounter - 1].execute(this);
-                    if (shouldIncrementProgramCounter) {
-                        programCounter ++;
+                    decodedProgram.instructions[index].execute(this);
+                } catch (IllegalMachineOperationException e) {
+                    recordFault(FaultCode.ILLEGAL_OPERATION, -1, e.getMessage());
+                }
+                break;
+            }
+            if (halted) {
+                break;
+            }
+            if (shouldIncrementProgramCounter) {
+                programCounter ++;
+            }
+            if (programCounter > opcodes.length) {
+                halted = true;
+                programCounter = 1;
+                break;
+            }
+        }
+        return steps;
+    }
+
+    private long executeDecoded(long maxSteps) {
+        return executeDecoded(maxSteps, null);
+    }
+
+    // the profiler, when given, is counted into block by block; superinstructions and loop acceleration would
+    // hide what it counts, so they are left out.
+    private long executeDecoded(long maxSteps, Profiler profiler) {
+        final DecodedProgram decodedProgram = getDecodedProgram();
+        final int[] opcodes = decodedProgram.opcodes;
+        final int[] operandKinds = decodedProgram.operandKinds;
+        final boolean narrow = this.narrow;
+        // literals are pre-truncated for 32-bit machines, so only ADD and SUB results need wrapping.
+        final long[] operands = narrow ? decodedProgram.getNarrowedOperands() : decodedProgram.operands;
+        final int[] blockEnds = decodedProgram.getAnalysis().blockEnds;
+        final int[] blockIndices = decodedProgram.getAnalysis().blockIndices;
+        final int length = opcodes.length;
+        final long[] registers = this.registers;
+        final Tape tape = this.tape;
+        final int tapeLength = tape.getLength();
+        // dense tapes are accessed directly; every other storage goes through the tape.
+        final long[] denseTape = tape instanceof ArrayTape ? ((ArrayTape) tape).cells : null;
+        final boolean tracking = this.tracking;
+        // superinstructions skip the per-instruction bookkeeping, so they are only used on untracked machines.
+        final int[] dispatch = decodedProgram.fusedOpcodes != null && !tracking && profiler == null ? decodedProgram.fusedOpcodes : opcodes;
+        final LoopAccelerator loops = loopAcceleration && narrow && !tracking && profiler == null ? decodedProgram.getLoopAccelerator() : null;
+        // tracked and arbitrary precision machines keep their own bookkeeping, so when profiled they run each
+        // instruction on their usual engine.
+        final boolean stepwise = profiler != null && (tracking || arbitrary);
+        final long overrun = this.overrun;
+
+        int pc = programCounter;
+        int index = pc - 1;
+        long steps = 0;
+        try {
+            execution:
+            while (steps < maxSteps) {
+                if (pc > length) {
+                    halted = true;
+                    pc = 1;
+                    break;
+                }
+
+                // straight-line code runs up to the end of its block (or of the budget) without further checks.
+                int first = pc - 1;
+                index = first;
+                int last = blockEnds[first];
+                if (loops != null && loops.isLoop(first)) {
+                    // jump straight to the state after as many iterations as the loop (or the budget) allows.
+                    long accelerated = loops.accelerate(first, registers, maxSteps - steps + overrun);
+                    if (accelerated > 0) {
+                        steps += accelerated;
+                        boolean repeat = opcodes[last] == DecodedProgram.OP_JZERO ? registers[0] == 0 : registers[0] > 0;
+                        pc = repeat ? first + 1 : last + 2;
+                        if (pc > length) {
+                            halted = true;
+                            pc = 1;
+                            break;
+                        }
+                        continue;
                     }
-                    if (programCounter > program.length) {
+                }
+                if (last - first >= maxSteps - steps) {
+                    last = first + (int) (maxSteps - steps) - 1;
+                }
+                int block = 0;
+                boolean sampled = false;
+                long start = 0;
+                if (profiler != null) {
+                    block = blockIndices[first];
+                    profiler.blockEntries[block] ++;
+                    sampled = profiler.shouldSample();
+                    start = sampled ? System.nanoTime() : 0;
+                }
+                pc = last + 2;
+                if (stepwise) {
+                    last = executeStepwise(profiler, first, last);
+                    pc = programCounter;
+                    index = last + 1;
+                }
+                instructions:
+                for (; index <= last; index ++) {
+                    long operand = operands[index];
+                    long value;
+                    long address;
+                    int opcode = dispatch[index];
+                    if (opcode >= DecodedProgram.FIRST_FUSED_OPCODE && index + DecodedProgram.fusedLength(opcode) - 1 > last) {
+                        opcode = opcodes[index];
+                    }
+                    switch (opcode) {
+                    case DecodedProgram.OP_NOP:
+                        break;
+                    case DecodedProgram.OP_ADD:
+                        value = operand;
+                        if (operandKinds[index] == DecodedProgram.KIND_REGISTER) {
+                            if (tracking) {
+                                lastReadRegisterNumber = (int) operand;
+                            }
+                            value = registers[(int) operand];
+                        }
+                        if (tracking) {
+                            accumulatorHasBeenRead = true;
+                            accumulatorHasBeenChanged = true;
+                        }
+                        registers[0] = narrow ? (int) (registers[0] + value) : registers[0] + value;
+                        break;
+                    case DecodedProgram.OP_SUB:
+                        value = operand;
+                        if (operandKinds[index] == DecodedProgram.KIND_REGISTER) {
+                            if (tracking) {
+                                lastReadRegisterNumber = (int) operand;
+                            }
+                            value = registers[(int) operand];
+                        }
+                        if (tracking) {
+                            accumulatorHasBeenRead = true;
+                            accumulatorHasBeenChanged = true;
+                        }
+                        registers[0] = Math.max(0, narrow ? (int) (registers[0] - value) : registers[0] - value);
+                        break;
+                    case DecodedProgram.OP_HALF:
+                        if (tracking) {
+                            accumulatorHasBeenRead = true;
+                            accumulatorHasBeenChanged = true;
+                        }
+                        registers[0] = registers[0] / 2;
+                        break;
+                    case DecodedProgram.OP_LOAD:
+                        value = operand;
+                        if (operandKinds[index] == DecodedProgram.KIND_REGISTER) {
+                            if (tracking) {
+                                lastReadRegisterNumber = (int) operand;
+                            }
+                            value = registers[(int) operand];
+                        }
+                        if (tracking) {
+                            accumulatorHasBeenChanged = true;
+                        }
+                        registers[0] = value;
+                        break;
+                    case DecodedProgram.OP_STORE:
+                        if (tracking) {
+                            accumulatorHasBeenRead = true;
+                            lastChangedRegisterNumber = (int) operand;
+                        }
+                        registers[(int) operand] = registers[0];
+                        break;
+                    case DecodedProgram.OP_READ:
+                        address = operand;
+                        if (operandKinds[index] == DecodedProgram.KIND_REGISTER) {
+                            if (tracking) {
+                                lastReadRegisterNumber = (int) operand;
+                            }
+                            address = registers[(int) operand];
+                        }
+                        if (address < 0 || address >= tapeLength) {
+                            decodedFault(index, FaultCode.TAPE_READ_OUT_OF_BOUNDS, address);
+                            pc = index + 1;
+                            last = index;
+                            break instructions;
+                        }
+                        if (tracking) {
+                            lastReadTapeAddress = (int) address;
+                            accumulatorHasBeenChanged = true;
+                        }
+                        if (profiler != null) {
+                            profiler.countRead((int) address);
+                        }
+                        registers[0] = denseTape != null ? denseTape[(int) address] : tape.get((int) address);
+                        break;
+                    case DecodedProgram.OP_WRITE:
+                        address = operand;
+                        if (operandKinds[index] == DecodedProgram.KIND_REGISTER) {
+                            if (tracking) {
+                                lastReadRegisterNumber = (int) operand;
+                            }
+                            address = registers[(int) operand];
+                        }
+                        if (tracking) {
+                            accumulatorHasBeenRead = true;
+                        }
+                        if (address < 0 || address >= tapeLength) {
+                            decodedFault(index, FaultCode.TAPE_WRITE_OUT_OF_BOUNDS, address);
+                            pc = index + 1;
+                            last = index;
+                            break instructions;
+                        }
+                        if (tracking) {
+                            lastChangedTapeAddress = (int) address;
+                        }
+                        if (profiler != null) {
+                            profiler.countWrite((int) address);
+                        }
+                        if (denseTape != null) {
+                            denseTape[(int) address] = registers[0];
+                        } else {
+                            tape.set((int) address, registers[0]);
+                        }
+                        break;
+                    case DecodedProgram.OP_JZERO:
+                        if (tracking) {
+                            accumulatorHasBeenRead = true;
+                        }
+                        if (profiler != null) {
+                            profiler.countBranch(index, registers[0] == 0);
+                        }
+                        if (registers[0] == 0) {
+                            pc = (int) operand;
+                        }
+                        break;
+                    case DecodedProgram.OP_JPOS:
+                        if (tracking) {
+                            accumulatorHasBeenRead = true;
+                        }
+                        if (profiler != null) {
+                            profiler.countBranch(index, registers[0] > 0);
+                        }
+                        if (registers[0] > 0) {
+                            pc = (int) operand;
+                        }
+                        break;
+                    case DecodedProgram.OP_JUMP:
+                        pc = (int) operand;
+                        break;
+                    case DecodedProgram.OP_HALT:
                         halted = true;
-                        programCounter = 1;
+                        pc = 1;
+                        last = index;
+                        break instructions;
+                    case DecodedProgram.OP_LOAD_ADD_STORE:
+                        registers[0] = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+                        index ++;
+                        value = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operands[index]] : operands[index];
+                        registers[0] = narrow ? (int) (registers[0] + value) : registers[0] + value;
+                        index ++;
+                        registers[(int) operands[index]] = registers[0];
+                        break;
+                    case DecodedProgram.OP_LOAD_SUB_STORE:
+                        registers[0] = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+                        index ++;
+                        value = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operands[index]] : operands[index];
+                        registers[0] = Math.max(0, narrow ? (int) (registers[0] - value) : registers[0] - value);
+                        index ++;
+                        registers[(int) operands[index]] = registers[0];
+                        break;
+                    case DecodedProgram.OP_LOAD_ADD:
+                        registers[0] = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+                        index ++;
+                        value = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operands[index]] : operands[index];
+                        registers[0] = narrow ? (int) (registers[0] + value) : registers[0] + value;
+                        break;
+                    case DecodedProgram.OP_LOAD_SUB:
+                        registers[0] = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+                        index ++;
+                        value = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operands[index]] : operands[index];
+                        registers[0] = Math.max(0, narrow ? (int) (registers[0] - value) : registers[0] - value);
+                        break;
+                    case DecodedProgram.OP_ADD_JZERO:
+                        value = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+                        registers[0] = narrow ? (int) (registers[0] + value) : registers[0] + value;
+                        index ++;
+                        if (registers[0] == 0) {
+                            pc = (int) operands[index];
+                        }
+                        break;
+                    case DecodedProgram.OP_ADD_JPOS:
+                        value = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+                        registers[0] = narrow ? (int) (registers[0] + value) : registers[0] + value;
+                        index ++;
+                        if (registers[0] > 0) {
+                            pc = (int) operands[index];
+                        }
+                        break;
+                    case DecodedProgram.OP_SUB_JZERO:
+                        value = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+                        registers[0] = Math.max(0, narrow ? (int) (registers[0] - value) : registers[0] - value);
+                        index ++;
+                        if (registers[0] == 0) {
+                            pc = (int) operands[index];
+                        }
+                        break;
+                    case DecodedProgram.OP_SUB_JPOS:
+                        value = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+                        registers[0] = Math.max(0, narrow ? (int) (registers[0] - value) : registers[0] - value);
+                        index ++;
+                        if (registers[0] > 0) {
+                            pc = (int) operands[index];
+                        }
+                        break;
+                    case DecodedProgram.OP_READ_STORE:
+                        address = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+                        if (address < 0 || address >= tapeLength) {
+                            decodedFault(index, FaultCode.TAPE_READ_OUT_OF_BOUNDS, address);
+                            pc = index + 1;
+                            last = index;
+                            break instructions;
+                        }
+                        registers[0] = denseTape != null ? denseTape[(int) address] : tape.get((int) address);
+                        index ++;
+                        registers[(int) operands[index]] = registers[0];
+                        break;
+                    case DecodedProgram.OP_LOAD_WRITE:
+                        registers[0] = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operand] : operand;
+                        index ++;
+                        address = operandKinds[index] == DecodedProgram.KIND_REGISTER ? registers[(int) operands[index]] : operands[index];
+                        if (address < 0 || address >= tapeLength) {
+                            decodedFault(index, FaultCode.TAPE_WRITE_OUT_OF_BOUNDS, address);
+                            pc = index + 1;
+                            last = index;
+                            break instructions;
+                        }
+                        if (denseTape != null) {
+                            denseTape[(int) address] = registers[0];
+                        } else {
+                            tape.set((int) address, registers[0]);
+                        }
+                        break;
+                    default:
+                        programCounter = index + 1;
+                        shouldIncrementProgramCounter = true;
+                        try {
+                            decodedProgram.instructions[index].execute(this);
+                        } catch (IllegalMachineOperationException e) {
+                            recordFault(FaultCode.ILLEGAL_OPERATION, -1, e.getMessage());
+                        }
+                        pc = programCounter;
+                        if (halted) {
+                            last = index;
+                            break instructions;
+                        }
+                        if (shouldIncrementProgramCounter) {
+                            pc ++;
+                        }
+                        break;
                     }
-                } catch (IllegalMachineOperationException e) {
-                    e.printStackTrace();
+                }
+                steps += last - first + 1;
+                if (profiler != null) {
+                    if (sampled) {
+                        profiler.addSample(block, System.nanoTime() - start);
+                    }
+                    profiler.countRun(blockEnds, block, first, last);
+                }
+                if (halted) {
+                    break;
+                }
+                if (pc > length) {
                     halted = true;
+                    pc = 1;
+                    break;
                 }
             }
+        } catch (RuntimeException e) {
+            pc = stepwise ? programCounter : index + 1;
+            throw e;
         } finally {
-            runningInstruction = false;
+            programCounter = pc;
+        }
+        return steps;
+    }
+
+    // runs a block one instruction at a time on the machine's usual engine, and returns the index of the last one run.
+    private int executeStepwise(Profiler profiler, int first, int last) {
+        final DecodedProgram decodedProgram = getDecodedProgram();
+        final long[] operands = narrow ? decodedProgram.getNarrowedOperands() : decodedProgram.operands;
+        for (int index = first; index <= last; index ++) {
+            profileInstruction(profiler, index, decodedProgram.opcodes[index], decodedProgram.operandKinds[index], operands[index]);
+            programCounter = index + 1;
+            executeUnprofiled(1);
+            if (halted || programCounter != index + 2) {
+                return index;
+            }
+        }
+        return last;
+    }
+
+    private void decodedFault(int index, FaultCode faultCode, long address) {
+        programCounter = index + 1;
+        recordFault(faultCode, address, null);
+    }
+
+    public void fault(FaultCode faultCode, long address) {
+        if (faultCode == null) {
+            throw new IllegalArgumentException("The fault code must not be null!");
+        }
+        shouldIncrementProgramCounter = false;
+        recordFault(faultCode, address, null);
+    }
+
+    private void recordFault(FaultCode faultCode, long address, String reason) {
+        halted = true;
+        faulted = true;
+        this.faultCode = faultCode;
+        this.faultProgramCounter = programCounter;
+        this.faultAddress = address;
+        this.faultReason = reason;
+        METRICS.faulted(faultCode);
+        if (JfrEvents.AVAILABLE) {
+            JfrEvents.fault(faultCode, programCounter, address, reason);
+        }
+        if (faultListener != null) {
+            faultListener.machineFaulted(this);
+        }
+    }
+
+    public WordWidth getWordWidth() {
+        return wordWidth;
+    }
+
+    public long getAccumulator() {
+        if (tracking && runningInstruction) {
+            accumulatorHasBeenRead = true;
+        }
+        return smallValue(registers[0], bigRegisters, 0);
+    }
+
+    public long getRegister(int registerNumber) {
+        if (tracking && runningInstruction) {
+            lastReadRegisterNumber = registerNumber;
+        }
+        return smallValue(registers[registerNumber], bigRegisters, registerNumber);
+    }
+
+    public long getTape(int tapeAddress) {
+        if (tapeAddress >= tape.getLength()) {
+            throw new IllegalArgumentException("Out of boundaries!");
+        }
+        if (tracking && runningInstruction) {
+            lastReadTapeAddress = tapeAddress;
         }
+        return smallValue(tape.get(tapeAddress), bigTape, tapeAddress);
     }
 
-    public int getAccumulator() {
-        if (runningInstruction) {
+    public BigInteger getBigAccumulator() {
+        if (tracking && runningInstruction) {
             accumulatorHasBeenRead = true;
         }
-        return registers[0];
+        return getBigValue(registers[0], bigRegisters, 0);
     }
 
-    public int getRegister(int registerNumber) {
-        if (runningInstruction) {
+    public BigInteger getBigRegister(int registerNumber) {
+        if (tracking && runningInstruction) {
             lastReadRegisterNumber = registerNumber;
         }
-        return registers[registerNumber];
+        return getBigValue(registers[registerNumber], bigRegisters, registerNumber);
     }
 
-    public int getTape(int tapeAddress) {
-        if (tapeAddress >= tape.length) {
+    public BigInteger getBigTape(int tapeAddress) {
+        if (tapeAddress >= tape.getLength()) {
             throw new IllegalArgumentException("Out of boundaries!");
         }
-        if (runningInstruction) {
+        if (tracking && runningInstruction) {
             lastReadTapeAddress = tapeAddress;
         }
-        return tape[tapeAddress];
+        return getBigValue(tape.get(tapeAddress), bigTape, tapeAddress);
     }
 
-    public void setAccumulator(int value) {
-        accumulatorHasBeenChanged = true;
-        registers[0] = value;
+    public void setAccumulator(long value) {
+        changedExternally();
+        if (tracking) {
+            accumulatorHasBeenChanged = true;
+        }
+        registers[0] = storeValue(registers[0], bigRegisters, 0, value);
+    }
+
+    public void setRegister(int registerNumber, long value) {
+        changedExternally();
+        if (tracking) {
+            lastChangedRegisterNumber = registerNumber;
+        }
+        registers[registerNumber] = storeValue(registers[registerNumber], bigRegisters, registerNumber, value);
+    }
+
+    public void setTape(int tapeAddress, long value) {
+        if (tapeAddress >= tape.getLength()) {
+            throw new IllegalArgumentException("Out of boundaries!");
+        }
+        changedExternally();
+        if (tracking) {
+            lastChangedTapeAddress = tapeAddress;
+        }
+        tape.set(tapeAddress, storeValue(tape.get(tapeAddress), bigTape, tapeAddress, value));
+    }
+
+    public void setBigAccumulator(BigInteger value) {
+        changedExternally();
+        if (tracking) {
+            accumulatorHasBeenChanged = true;
+        }
+        registers[0] = storeBigValue(registers[0], bigRegisters, 0, value);
     }
 
-    public void setRegister(int registerNumber, int value) {
-        lastChangedRegisterNumber = registerNumber;
-        registers[registerNumber] = value;
+    public void setBigRegister(int registerNumber, BigInteger value) {
+        changedExternally();
+        if (tracking) {
+            lastChangedRegisterNumber = registerNumber;
+        }
+        registers[registerNumber] = storeBigValue(registers[registerNumber], bigRegisters, registerNumber, value);
     }
 
-    public void setTape(int tapeAddress, int value) {
-        if (tapeAddress >= tape.length) {
+    public void setBigTape(int tapeAddress, BigInteger value) {
+        if (tapeAddress >= tape.getLength()) {
             throw new IllegalArgumentException("Out of boundaries!");
         }
-        lastChangedTapeAddress = tapeAddress;
-        tape[tapeAddress] = value;
+        changedExternally();
+        if (tracking) {
+            lastChangedTapeAddress = tapeAddress;
+        }
+        tape.set(tapeAddress, storeBigValue(tape.get(tapeAddress), bigTape, tapeAddress, value));
+    }
+
+    private long smallValue(long cell, Map<Integer, BigInteger> bigCells, int index) {
+        if (arbitrary && cell == BIG_VALUE) {
+            throw new ArithmeticException("The value " + bigCells.get(index) + " does not fit in a long!");
+        }
+        return cell;
+    }
+
+    private BigInteger getBigValue(long cell, Map<Integer, BigInteger> bigCells, int index) {
+        if (arbitrary && cell == BIG_VALUE) {
+            return bigCells.get(index);
+        }
+        return BigInteger.valueOf(cell);
+    }
+
+    // these return what a cell holding the previous value should hold next, keeping the side table in step.
+    private long storeValue(long previous, Map<Integer, BigInteger> bigCells, int index, long value) {
+        if (narrow) {
+            value = (int) value;
+        } else if (arbitrary) {
+            if (previous == BIG_VALUE) {
+                bigCells.remove(index);
+            }
+            if (value == BIG_VALUE) {
+                bigCells.put(index, BigInteger.valueOf(value));
+            }
+        }
+        return value;
+    }
+
+    private long storeBigValue(long previous, Map<Integer, BigInteger> bigCells, int index, BigInteger value) {
+        if (!arbitrary || value.bitLength() < 64) {
+            return storeValue(previous, bigCells, index, value.longValue());
+        }
+        bigCells.put(index, value);
+        return BIG_VALUE;
+    }
+
+    private long copyValue(long from, Map<Integer, BigInteger> fromBigCells, int fromIndex, long previous, Map<Integer, BigInteger> toBigCells, int toIndex) {
+        if (from == BIG_VALUE) {
+            toBigCells.put(toIndex, fromBigCells.get(fromIndex));
+            return BIG_VALUE;
+        }
+        return storeValue(previous, toBigCells, toIndex, from);
     }
 
     public void setProgramCounter(int instructionAddress) {
@@ -163,8 +1307,91 @@ public class Machine {
         return halted;
     }
 
+    public boolean isFaulted() {
+        return faulted;
+    }
+
+    public FaultCode getFaultCode() {
+        return faultCode;
+    }
+
+    public int getFaultProgramCounter() {
+        return faultProgramCounter;
+    }
+
+    public long getFaultAddress() {
+        return faultAddress;
+    }
+
+    public String describeFault() {
+        if (!faulted) {
+            return null;
+        }
+        if (faultReason != null) {
+            return faultReason;
+        }
+        String mnemonic = program[faultProgramCounter - 1].getInstructionType().getMnemonic().toUpperCase();
+        return "Failed to execute " + mnemonic + " at line #" + faultProgramCounter + ": " + faultCode.getDescription() + " (address " + faultAddress + ")";
+    }
+
+    public FaultListener getFaultListener() {
+        return faultListener;
+    }
+
+    public void setFaultListener(FaultListener faultListener) {
+        this.faultListener = faultListener;
+    }
+
+    public void addMachineListener(MachineListener listener) {
+        addMachineListener(listener, MachineEvent.ALL);
+    }
+
+    // the mask is any combination of the MachineEvent kinds. while there are listeners, every run goes one step at a time.
+    public void addMachineListener(MachineListener listener, int mask) {
+        if (listener == null) {
+            throw new IllegalArgumentException("The listener must not be null!");
+        }
+        if (mask == 0 || (mask & ~MachineEvent.ALL) != 0) {
+            throw new IllegalArgumentException("Invalid event mask " + mask + "!");
+        }
+        MachineListener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        int[] listenerMasks = Arrays.copyOf(this.listenerMasks, this.listenerMasks.length + 1);
+        listeners[listeners.length - 1] = listener;
+        listenerMasks[listenerMasks.length - 1] = mask;
+        setListeners(listeners, listenerMasks);
+    }
+
+    public void removeMachineListener(MachineListener listener) {
+        for (int i = 0; i < listeners.length; i ++) {
+            if (listeners[i] == listener) {
+                MachineListener[] listeners = new MachineListener[this.listeners.length - 1];
+                int[] listenerMasks = new int[this.listenerMasks.length - 1];
+                System.arraycopy(this.listeners, 0, listeners, 0, i);
+                System.arraycopy(this.listeners, i + 1, listeners, i, listeners.length - i);
+                System.arraycopy(this.listenerMasks, 0, listenerMasks, 0, i);
+                System.arraycopy(this.listenerMasks, i + 1, listenerMasks, i, listenerMasks.length - i);
+                setListeners(listeners, listenerMasks);
+                return;
+            }
+        }
+    }
+
+    private void setListeners(MachineListener[] listeners, int[] listenerMasks) {
+        int listenerMask = 0;
+        for (int i = 0; i < listenerMasks.length; i ++) {
+            listenerMask |= listenerMasks[i];
+        }
+        this.listeners = listeners;
+        this.listenerMasks = listenerMasks;
+        this.listenerMask = listenerMask;
+    }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
     public int getTapeLength() {
-        return tape.length;
+        return tape.getLength();
     }
 
     public int getRegisterCount() {
@@ -183,7 +1410,7 @@ public class Machine {
         return program.length;
     }
 
-    public int resolveArgumentValue(InstructionArgument argument) {
+    public long resolveArgumentValue(InstructionArgument argument) {
         if (argument instanceof InstructionArgument.Literal) {
             return ((InstructionArgument.Literal)argument).getValue();
         } else if (argument instanceof InstructionArgument.Register) {
@@ -195,13 +1422,209 @@ public class Machine {
         }
     }
 
+    public MachineSnapshot checkpoint() {
+        return new MachineSnapshot(tape, tape.checkpoint(), new HashMap<Integer, BigInteger>(bigTape), registers.clone(),
+                new HashMap<Integer, BigInteger>(bigRegisters), programCounter, halted, faulted, faultCode, faultProgramCounter,
+                faultAddress, faultReason, stepCount);
+    }
+
+    public void restore(MachineSnapshot snapshot) {
+        if (snapshot.tapeType != tape.getClass() || snapshot.tapeLength != tape.getLength() || snapshot.registers.length != registers.length) {
+            throw new IllegalArgumentException("The snapshot was taken from an incompatible machine!");
+        }
+        restoreState(snapshot);
+        clearUndoLog();
+        clearTracking();
+    }
+
+    private void restoreState(MachineSnapshot snapshot) {
+        tape.restore(snapshot.tapeState);
+        bigTape.clear();
+        bigTape.putAll(snapshot.bigTape);
+        System.arraycopy(snapshot.registers, 0, registers, 0, registers.length);
+        bigRegisters.clear();
+        bigRegisters.putAll(snapshot.bigRegisters);
+        programCounter = snapshot.programCounter;
+        halted = snapshot.halted;
+        faulted = snapshot.faulted;
+        faultCode = snapshot.faultCode;
+        faultProgramCounter = snapshot.faultProgramCounter;
+        faultAddress = snapshot.faultAddress;
+        faultReason = snapshot.faultReason;
+        stepCount = snapshot.stepCount;
+    }
+
+    public int getUndoLogCapacity() {
+        return undoLog == null ? 0 : undoLog.getCapacity();
+    }
+
+    public Profiler getProfiler() {
+        return profiler;
+    }
+
+    // null turns profiling off; while a profiler is set, runs go through a slower counting loop.
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public void setUndoLogCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The undo log capacity must not be negative!");
+        }
+        undoLog = capacity == 0 ? null : new UndoLog(capacity);
+    }
+
+    private void clearUndoLog() {
+        if (undoLog != null) {
+            undoLog.clear();
+        }
+    }
+
+    // changes made from outside a running instruction are not logged, so history before them is dropped.
+    private void changedExternally() {
+        if (undoLog != null && !runningInstruction) {
+            undoLog.clear();
+        }
+    }
+
+    public boolean canStepBack() {
+        return undoLog != null && stepCount > 0 && (undoLog.size() > 0 || undoLog.checkpointAtOrBefore(stepCount - 1) != null);
+    }
+
+    public boolean stepBack() {
+        if (!prepareStepBack()) {
+            return false;
+        }
+        undoStep();
+        clearTracking();
+        return true;
+    }
+
+    public boolean stepBackToTapeWrite(int tapeAddress) {
+        if (undoLog == null) {
+            return false;
+        }
+        long originalStepCount = stepCount;
+        while (prepareStepBack()) {
+            undoStep();
+            if (undoLog.targetKind() == UndoLog.TARGET_TAPE && undoLog.target() == tapeAddress) {
+                clearTracking();
+                return true;
+            }
+        }
+        // the cell was never written, so the steps undone while searching are run again to leave the machine where it was.
+        replayTo(originalStepCount);
+        clearTracking();
+        return false;
+    }
+
+    public boolean rewindTo(long targetStepCount) {
+        if (undoLog == null || targetStepCount < 0 || targetStepCount > stepCount) {
+            return false;
+        }
+        if (stepCount - undoLog.size() > targetStepCount) {
+            // too far back for the log: start over from the closest checkpoint and run forward.
+            MachineSnapshot checkpoint = undoLog.checkpointAtOrBefore(targetStepCount);
+            if (checkpoint == null) {
+                return false;
+            }
+            replayFrom(checkpoint, targetStepCount);
+        }
+        while (stepCount > targetStepCount) {
+            undoStep();
+        }
+        clearTracking();
+        return true;
+    }
+
+    // makes sure the log holds the step just taken, refilling it from a checkpoint when it has run dry.
+    private boolean prepareStepBack() {
+        if (undoLog == null || stepCount == 0) {
+            return false;
+        }
+        if (undoLog.size() == 0) {
+            MachineSnapshot checkpoint = undoLog.checkpointAtOrBefore(stepCount - 1);
+            if (checkpoint == null) {
+                return false;
+            }
+            replayFrom(checkpoint, stepCount);
+        }
+        return undoLog.size() > 0;
+    }
+
+    private void replayFrom(MachineSnapshot checkpoint, long targetStepCount) {
+        restoreState(checkpoint);
+        undoLog.clearEntries();
+        replayTo(targetStepCount);
+    }
+
+    private void replayTo(long targetStepCount) {
+        try {
+            runningInstruction = true;
+            // steps that already happened once are not published again.
+            executeUnobserved(targetStepCount - stepCount);
+        } finally {
+            runningInstruction = false;
+        }
+    }
+
+    private void undoStep() {
+        undoLog.pop();
+        long value = undoLog.value();
+        BigInteger bigValue = (BigInteger) undoLog.bigValue();
+        int target = undoLog.target();
+        switch (undoLog.targetKind()) {
+        case UndoLog.TARGET_ACCUMULATOR:
+            registers[0] = value;
+            undoBigCell(bigRegisters, 0, bigValue);
+            break;
+        case UndoLog.TARGET_REGISTER:
+            registers[target] = value;
+            undoBigCell(bigRegisters, target, bigValue);
+            break;
+        case UndoLog.TARGET_TAPE:
+            tape.set(target, value);
+            undoBigCell(bigTape, target, bigValue);
+            break;
+        }
+        programCounter = undoLog.programCounter();
+        halted = false;
+        faulted = false;
+        faultCode = null;
+        faultProgramCounter = 0;
+        faultAddress = 0;
+        faultReason = null;
+        stepCount --;
+    }
+
+    private void undoBigCell(Map<Integer, BigInteger> bigCells, int index, BigInteger bigValue) {
+        if (bigValue != null) {
+            bigCells.put(index, bigValue);
+        } else if (arbitrary) {
+            bigCells.remove(index);
+        }
+    }
+
     public void reset() {
         programCounter = 1;
         halted = false;
+        faulted = false;
+        faultCode = null;
+        faultProgramCounter = 0;
+        faultAddress = 0;
+        faultReason = null;
+        stepCount = 0;
+        cancelled = false;
+        clearUndoLog();
         for (int i = 0; i < registers.length; i ++) {
             registers[i] = 0;
         }
+        bigRegisters.clear();
+
+        clearTracking();
+    }
 
+    private void clearTracking() {
         accumulatorHasBeenRead = false;
         lastReadRegisterNumber = -1;
         lastReadTapeAddress = -1;
@@ -234,6 +1657,23 @@ public class Machine {
         return tapeAddress == lastChangedTapeAddress;
     }
 
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    public void setTracking(boolean tracking) {
+        this.tracking = tracking;
+        clearTracking();
+    }
+
+    public boolean isLoopAcceleration() {
+        return loopAcceleration;
+    }
+
+    public void setLoopAcceleration(boolean loopAcceleration) {
+        this.loopAcceleration = loopAcceleration;
+    }
+
     public boolean isRunningInstruction() {
         return runningInstruction;
     }
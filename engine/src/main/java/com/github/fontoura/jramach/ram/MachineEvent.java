@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import java.math.BigInteger;
+
+// one change made by an executed instruction. the kinds are bits, so listeners can be
+// subscribed to any combination of them.
+public final class MachineEvent {
+    // the old and new values are the instruction addresses.
+    public static final int PROGRAM_COUNTER_MOVED = 1;
+    public static final int ACCUMULATOR_READ = 1 << 1;
+    public static final int ACCUMULATOR_WRITTEN = 1 << 2;
+    public static final int REGISTER_READ = 1 << 3;
+    public static final int REGISTER_WRITTEN = 1 << 4;
+    public static final int TAPE_READ = 1 << 5;
+    public static final int TAPE_WRITTEN = 1 << 6;
+
+    public static final int READS = ACCUMULATOR_READ | REGISTER_READ | TAPE_READ;
+    public static final int WRITES = ACCUMULATOR_WRITTEN | REGISTER_WRITTEN | TAPE_WRITTEN;
+    public static final int ALL = PROGRAM_COUNTER_MOVED | READS | WRITES;
+
+    private final Machine machine;
+    private final int kind;
+    private final int index;
+    private final long oldValue;
+    private final BigInteger bigOldValue;
+    private final long newValue;
+    private final BigInteger bigNewValue;
+
+    MachineEvent(Machine machine, int kind, int index, long oldValue, BigInteger bigOldValue, long newValue, BigInteger bigNewValue) {
+        this.machine = machine;
+        this.kind = kind;
+        this.index = index;
+        this.oldValue = oldValue;
+        this.bigOldValue = bigOldValue;
+        this.newValue = newValue;
+        this.bigNewValue = bigNewValue;
+    }
+
+    public Machine getMachine() {
+        return machine;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    // the register number or tape address, or -1 for the accumulator and the program counter.
+    public int getIndex() {
+        return index;
+    }
+
+    // reads have the same old and new value.
+    public long getOldValue() {
+        return smallValue(oldValue, bigOldValue);
+    }
+
+    public long getNewValue() {
+        return smallValue(newValue, bigNewValue);
+    }
+
+    public BigInteger getBigOldValue() {
+        return bigOldValue != null ? bigOldValue : BigInteger.valueOf(oldValue);
+    }
+
+    public BigInteger getBigNewValue() {
+        return bigNewValue != null ? bigNewValue : BigInteger.valueOf(newValue);
+    }
+
+    private static long smallValue(long value, BigInteger bigValue) {
+        if (bigValue != null) {
+            throw new ArithmeticException("The value " + bigValue + " does not fit in a long!");
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+        case PROGRAM_COUNTER_MOVED:
+            return "pc " + oldValue + " -> " + newValue;
+        case ACCUMULATOR_READ:
+            return "read accumulator = " + getBigNewValue();
+        case ACCUMULATOR_WRITTEN:
+            return "wrote accumulator " + getBigOldValue() + " -> " + getBigNewValue();
+        case REGISTER_READ:
+            return "read R" + index + " = " + getBigNewValue();
+        case REGISTER_WRITTEN:
+            return "wrote R" + index + " " + getBigOldValue() + " -> " + getBigNewValue();
+        case TAPE_READ:
+            return "read tape[" + index + "] = " + getBigNewValue();
+        default:
+            return "wrote tape[" + index + "] " + getBigOldValue() + " -> " + getBigNewValue();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// counters are LongAdders, so machines running on many threads don't all write to the same cache line.
+public final class MachineMetrics implements MachineMetricsMXBean {
+    public static final String OBJECT_NAME = "com.github.fontoura.jramach:type=MachineMetrics";
+
+    // the instructions per second are averaged over roughly this long.
+    private static final long RATE_WINDOW_NANOS = 10000000000L;
+    private static final int RATE_SAMPLES = 16;
+
+    private static final MachineMetrics INSTANCE = new MachineMetrics();
+    private static boolean registered;
+
+    private final LongAdder activeMachines = new LongAdder();
+    private final LongAdder activeSessions = new LongAdder();
+    private final LongAdder instructions = new LongAdder();
+    private final LongAdder tapeCells = new LongAdder();
+    private final LongAdder halts = new LongAdder();
+    private final LongAdder[] faults = new LongAdder[FaultCode.values().length];
+    private final LongAdder budgetExhaustions = new LongAdder();
+    private final LongAdder deadlinesExceeded = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LongAdder programsAssembled = new LongAdder();
+    private final LongAdder assemblyFailures = new LongAdder();
+
+    // a ring of (time, total instructions) readings taken whenever the rate is asked for.
+    private final long[] rateTimes = new long[RATE_SAMPLES];
+    private final long[] rateTotals = new long[RATE_SAMPLES];
+    private int rateHead;
+    private int rateCount;
+
+    private MachineMetrics() {
+        for (int i = 0; i < faults.length; i ++) {
+            faults[i] = new LongAdder();
+        }
+    }
+
+    // the counters are kept either way; applications call this once to publish them to the platform MBean server.
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            // another copy of the engine got there first; its bean keeps the name.
+        } catch (SecurityException e) {
+            // counting still works, it just isn't visible.
+        }
+    }
+
+    public static MachineMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    void runStarted(long tapeCellsInUse) {
+        activeMachines.increment();
+        tapeCells.add(tapeCellsInUse);
+    }
+
+    void tapeCellsChanged(long difference) {
+        tapeCells.add(difference);
+    }
+
+    void runEnded(long tapeCellsInUse) {
+        activeMachines.decrement();
+        tapeCells.add(-tapeCellsInUse);
+    }
+
+    void instructionsExecuted(long count) {
+        instructions.add(count);
+    }
+
+    // faults are counted where they happen, so only the other outcomes are counted here.
+    void countStatus(RunResult.Status status) {
+        switch (status) {
+        case HALTED:
+            halts.increment();
+            break;
+        case BUDGET_EXHAUSTED:
+            budgetExhaustions.increment();
+            break;
+        case DEADLINE_EXCEEDED:
+            deadlinesExceeded.increment();
+            break;
+        case CANCELLED:
+            cancellations.increment();
+            break;
+        default:
+            break;
+        }
+    }
+
+    void faulted(FaultCode faultCode) {
+        faults[faultCode.ordinal()].increment();
+    }
+
+    void assembled(boolean succeeded) {
+        if (succeeded) {
+            programsAssembled.increment();
+        } else {
+            assemblyFailures.increment();
+        }
+    }
+
+    // for front ends that step a machine interactively instead of running it.
+    public void sessionOpened() {
+        activeSessions.increment();
+    }
+
+    public void sessionClosed() {
+        activeSessions.decrement();
+    }
+
+    public long getActiveMachines() {
+        return activeMachines.sum();
+    }
+
+    public long getActiveSessions() {
+        return activeSessions.sum();
+    }
+
+    public long getTotalInstructions() {
+        return instructions.sum();
+    }
+
+    public synchronized long getInstructionsPerSecond() {
+        long now = System.nanoTime();
+        long total = instructions.sum();
+
+        // the oldest reading still inside the window is the baseline; failing that, the newest one outside it.
+        long baseTime = now;
+        long baseTotal = total;
+        for (int i = 0; i < rateCount; i ++) {
+            int slot = (rateHead - 1 - i + RATE_SAMPLES) % RATE_SAMPLES;
+            baseTime = rateTimes[slot];
+            baseTotal = rateTotals[slot];
+            if (now - baseTime >= RATE_WINDOW_NANOS) {
+                break;
+            }
+        }
+
+        rateTimes[rateHead] = now;
+        rateTotals[rateHead] = total;
+        rateHead = (rateHead + 1) % RATE_SAMPLES;
+        rateCount = Math.min(rateCount + 1, RATE_SAMPLES);
+
+        long elapsed = now - baseTime;
+        return elapsed > 0 ? (long) ((total - baseTotal) * 1e9 / elapsed) : 0;
+    }
+
+    public long getTapeCellsInUse() {
+        return tapeCells.sum();
+    }
+
+    public long getHalts() {
+        return halts.sum();
+    }
+
+    public long getFaults() {
+        long total = 0;
+        for (int i = 0; i < faults.length; i ++) {
+            total += faults[i].sum();
+        }
+        return total;
+    }
+
+    public Map<String, Long> getFaultsByKind() {
+        Map<String, Long> byKind = new LinkedHashMap<String, Long>();
+        FaultCode[] faultCodes = FaultCode.values();
+        for (int i = 0; i < faultCodes.length; i ++) {
+            byKind.put(faultCodes[i].name(), faults[i].sum());
+        }
+        return byKind;
+    }
+
+    public long getBudgetExhaustions() {
+        return budgetExhaustions.sum();
+    }
+
+    public long getDeadlinesExceeded() {
+        return deadlinesExceeded.sum();
+    }
+
+    public long getCancellations() {
+        return cancellations.sum();
+    }
+
+    public long getProgramsAssembled() {
+        return programsAssembled.sum();
+    }
+
+    public long getAssemblyFailures() {
+        return assemblyFailures.sum();
+    }
+}
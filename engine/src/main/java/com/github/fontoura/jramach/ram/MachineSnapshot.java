@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+public final class MachineSnapshot {
+    final Class<?> tapeType;
+    final int tapeLength;
+    final Object tapeState;
+    final Map<Integer, BigInteger> bigTape;
+    final long[] registers;
+    final Map<Integer, BigInteger> bigRegisters;
+    final int programCounter;
+    final boolean halted;
+    final boolean faulted;
+    final FaultCode faultCode;
+    final int faultProgramCounter;
+    final long faultAddress;
+    final String faultReason;
+    final long stepCount;
+
+    MachineSnapshot(Tape tape, Object tapeState, Map<Integer, BigInteger> bigTape, long[] registers, Map<Integer, BigInteger> bigRegisters,
+            int programCounter, boolean halted, boolean faulted, FaultCode faultCode, int faultProgramCounter, long faultAddress,
+            String faultReason, long stepCount) {
+        this.tapeType = tape.getClass();
+        this.tapeLength = tape.getLength();
+        this.tapeState = tapeState;
+        this.bigTape = bigTape;
+        this.registers = registers;
+        this.bigRegisters = bigRegisters;
+        this.programCounter = programCounter;
+        this.halted = halted;
+        this.faulted = faulted;
+        this.faultCode = faultCode;
+        this.faultProgramCounter = faultProgramCounter;
+        this.faultAddress = faultAddress;
+        this.faultReason = faultReason;
+        this.stepCount = stepCount;
+    }
+
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+
+    public boolean isFaulted() {
+        return faulted;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public final class MappedTape extends Tape {
+    // a single mapping can't exceed 2 GB, so the file is mapped in chunks of this many bytes.
+    private static final int CHUNK_BYTE_BITS = 30;
+
+    private final int length;
+    private final boolean wide;
+    private final int chunkBits;
+    private final int chunkMask;
+    private final MappedByteBuffer[] chunks;
+    private final IntBuffer[] intChunks;
+    private final LongBuffer[] longChunks;
+
+    // the file holds big-endian cells of the given width; values are truncated to it when written.
+    // machines using the tape must have words no wider than the cells, and can't be arbitrary precision.
+    // unless persistent, writes go to a private copy-on-write mapping and never reach the file.
+    public MappedTape(File file, WordWidth cellWidth, boolean persistent) throws IOException {
+        if (cellWidth == WordWidth.ARBITRARY) {
+            throw new IllegalArgumentException("Mapped tapes can only hold fixed width cells!");
+        }
+        // opening the file for writing would silently create an empty tape in its place.
+        if (!file.isFile()) {
+            throw new FileNotFoundException("The tape file " + file + " does not exist!");
+        }
+        wide = cellWidth == WordWidth.LONG;
+        int cellBits = wide ? 3 : 2;
+        chunkBits = CHUNK_BYTE_BITS - cellBits;
+        chunkMask = (1 << chunkBits) - 1;
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long cellCount = channel.size() >>> cellBits;
+            if (cellCount > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The file holds more cells than a tape can address!");
+            }
+            length = (int) cellCount;
+            chunks = new MappedByteBuffer[(int) ((cellCount + chunkMask) >>> chunkBits)];
+            intChunks = wide ? null : new IntBuffer[chunks.length];
+            longChunks = wide ? new LongBuffer[chunks.length] : null;
+            FileChannel.MapMode mode = persistent ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.PRIVATE;
+            for (int i = 0; i < chunks.length; i ++) {
+                long first = (long) i << chunkBits;
+                long cells = Math.min(cellCount - first, 1L << chunkBits);
+                chunks[i] = channel.map(mode, first << cellBits, cells << cellBits);
+                if (wide) {
+                    longChunks[i] = chunks[i].asLongBuffer();
+                } else {
+                    intChunks[i] = chunks[i].asIntBuffer();
+                }
+            }
+        } finally {
+            // mappings stay valid after the channel is closed.
+            randomAccessFile.close();
+        }
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public long get(int address) {
+        if (wide) {
+            return longChunks[address >>> chunkBits].get(address & chunkMask);
+        }
+        return intChunks[address >>> chunkBits].get(address & chunkMask);
+    }
+
+    @Override
+    public void set(int address, long value) {
+        if (wide) {
+            longChunks[address >>> chunkBits].put(address & chunkMask, value);
+        } else {
+            intChunks[address >>> chunkBits].put(address & chunkMask, (int) value);
+        }
+    }
+
+    @Override
+    boolean canHold(WordWidth wordWidth) {
+        // the marker for values that outgrow a long would reach the file without the value it stands for.
+        if (wordWidth == WordWidth.ARBITRARY) {
+            return false;
+        }
+        return wide || wordWidth == WordWidth.INT;
+    }
+
+    @Override
+    boolean canCheckpoint() {
+        return false;
+    }
+
+    @Override
+    Object checkpoint() {
+        throw new IllegalStateException("Mapped tapes can't be checkpointed!");
+    }
+
+    public void flush() {
+        for (int i = 0; i < chunks.length; i ++) {
+            chunks[i].force();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class PagedTape extends Tape {
+    static final int PAGE_BITS = 10;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+    static final int DIRECTORY_BITS = 10;
+    static final int DIRECTORY_SIZE = 1 << DIRECTORY_BITS;
+    static final int DIRECTORY_MASK = DIRECTORY_SIZE - 1;
+
+    // every page carries, past its cells, the generation that owns it. a page from an older generation may
+    // be shared with a snapshot, so it is copied before being written. generations are unique across tapes.
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    // untouched pages (and directories) all share these, so reads never have to check for missing ones.
+    private static final long[] ZERO_PAGE = new long[PAGE_SIZE + 1];
+    private static final long[][] ZERO_DIRECTORY = new long[DIRECTORY_SIZE][];
+
+    static {
+        ZERO_PAGE[PAGE_SIZE] = -1;
+        Arrays.fill(ZERO_DIRECTORY, ZERO_PAGE);
+    }
+
+    private final int length;
+    private long[][][] directories;
+    private boolean directoriesOwned;
+    private final long[] directoryGenerations;
+    private long generation;
+    private int allocatedPages;
+
+    public PagedTape(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("The tape length must not be negative!");
+        }
+        this.length = length;
+        long pageCount = ((long) length + PAGE_MASK) >>> PAGE_BITS;
+        directories = new long[(int) ((pageCount + DIRECTORY_MASK) >>> DIRECTORY_BITS)][][];
+        Arrays.fill(directories, ZERO_DIRECTORY);
+        directoriesOwned = true;
+        directoryGenerations = new long[directories.length];
+        generation = GENERATIONS.incrementAndGet();
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public long get(int address) {
+        return directories[address >>> (PAGE_BITS + DIRECTORY_BITS)][(address >>> PAGE_BITS) & DIRECTORY_MASK][address & PAGE_MASK];
+    }
+
+    @Override
+    public void set(int address, long value) {
+        int directoryIndex = address >>> (PAGE_BITS + DIRECTORY_BITS);
+        int pageIndex = (address >>> PAGE_BITS) & DIRECTORY_MASK;
+        long[] page = directories[directoryIndex][pageIndex];
+        if (page[PAGE_SIZE] != generation) {
+            if (page == ZERO_PAGE && value == 0) {
+                return;
+            }
+            page = ownPage(directoryIndex, pageIndex);
+        }
+        page[address & PAGE_MASK] = value;
+    }
+
+    private long[] ownPage(int directoryIndex, int pageIndex) {
+        if (!directoriesOwned) {
+            directories = directories.clone();
+            directoriesOwned = true;
+        }
+        long[][] directory = directories[directoryIndex];
+        if (directoryGenerations[directoryIndex] != generation) {
+            directory = directory.clone();
+            directories[directoryIndex] = directory;
+            directoryGenerations[directoryIndex] = generation;
+        }
+        long[] page = directory[pageIndex];
+        if (page == ZERO_PAGE) {
+            page = new long[PAGE_SIZE + 1];
+            allocatedPages ++;
+        } else {
+            page = page.clone();
+        }
+        page[PAGE_SIZE] = generation;
+        directory[pageIndex] = page;
+        return page;
+    }
+
+    public int getAllocatedPageCount() {
+        return allocatedPages;
+    }
+
+    @Override
+    long getCellsInUse() {
+        return (long) allocatedPages * PAGE_SIZE;
+    }
+
+    @Override
+    Object checkpoint() {
+        // from now on everything reachable belongs to the snapshot, and writes copy what they touch.
+        directoriesOwned = false;
+        generation = GENERATIONS.incrementAndGet();
+        return new State(directories, allocatedPages);
+    }
+
+    @Override
+    void restore(Object state) {
+        State pagedState = (State) state;
+        directories = pagedState.directories;
+        directoriesOwned = false;
+        allocatedPages = pagedState.allocatedPages;
+        generation = GENERATIONS.incrementAndGet();
+    }
+
+    private static final class State {
+        final long[][][] directories;
+        final int allocatedPages;
+
+        State(long[][][] directories, int allocatedPages) {
+            this.directories = directories;
+            this.allocatedPages = allocatedPages;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+public final class Profiler {
+    // block times come from reading the clock on about one block entry in this many.
+    private static final int SAMPLING_INTERVAL = 64;
+
+    DecodedProgram program;
+    // executions only holds runs of blocks that were cut short; whole runs are in blockRuns.
+    long[] executions;
+    long[] branchesTaken;
+    long[] branchesNotTaken;
+    long[] blockEntries;
+    long[] blockRuns;
+    long[] blockSamples;
+    long[] blockSampledNanos;
+    // per address counts are paged, so a few addresses far out on a huge sparse tape stay cheap.
+    TapeCounters tapeReads;
+    TapeCounters tapeWrites;
+    private int countdown;
+    private int seed;
+
+    public Profiler() {
+        clear();
+    }
+
+    public void clear() {
+        program = null;
+        executions = new long[0];
+        branchesTaken = new long[0];
+        branchesNotTaken = new long[0];
+        blockEntries = new long[0];
+        blockRuns = new long[0];
+        blockSamples = new long[0];
+        blockSampledNanos = new long[0];
+        tapeReads = new TapeCounters();
+        tapeWrites = new TapeCounters();
+        countdown = 1;
+        seed = 0x2545F491;
+    }
+
+    // the counts only make sense for one program, so switching programs starts over.
+    void prepare(DecodedProgram program) {
+        if (this.program == program) {
+            return;
+        }
+        clear();
+        this.program = program;
+        int length = program.length();
+        int blockCount = program.getAnalysis().basicBlocks().size();
+        executions = new long[length];
+        branchesTaken = new long[length];
+        branchesNotTaken = new long[length];
+        blockEntries = new long[blockCount];
+        blockRuns = new long[blockCount];
+        blockSamples = new long[blockCount];
+        blockSampledNanos = new long[blockCount];
+    }
+
+    boolean shouldSample() {
+        if (-- countdown > 0) {
+            return false;
+        }
+        // a jittered interval, so that loops whose length divides it are not always timed at the same block.
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        countdown = SAMPLING_INTERVAL / 2 + (seed & (SAMPLING_INTERVAL - 1));
+        return true;
+    }
+
+    void addSample(int block, long nanos) {
+        blockSamples[block] ++;
+        blockSampledNanos[block] += nanos;
+    }
+
+    void countBranch(int index, boolean taken) {
+        if (taken) {
+            branchesTaken[index] ++;
+        } else {
+            branchesNotTaken[index] ++;
+        }
+    }
+
+    // whole runs of a block are counted once; runs cut short (or resumed midway) count their instructions one by one.
+    void countRun(int[] blockEnds, int block, int first, int last) {
+        int end = blockEnds[first];
+        if (last == end && (first == 0 || blockEnds[first - 1] != end)) {
+            blockRuns[block] ++;
+        } else {
+            for (int i = first; i <= last; i ++) {
+                executions[i] ++;
+            }
+        }
+    }
+
+    void countRead(int address) {
+        tapeReads.count(address);
+    }
+
+    void countWrite(int address) {
+        tapeWrites.count(address);
+    }
+
+    public ExecutionProfile getProfile() {
+        return new ExecutionProfile(this, null);
+    }
+
+    // maps every instruction back to the line it came from in the given assembly source.
+    public ExecutionProfile getProfile(String source) {
+        return new ExecutionProfile(this, Assembler.mapSourceLines(source));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class ProgramAnalysis {
+    private final DecodedProgram program;
+    private final boolean[] leaders;
+    private final List<BasicBlock> blocks;
+    final int[] blockIndices;
+    final int[] blockEnds;
+
+    private ProgramAnalysis(DecodedProgram program) {
+        this.program = program;
+        int length = program.length();
+        this.leaders = findLeaders(program);
+        this.blockIndices = new int[length];
+        this.blockEnds = new int[length];
+
+        List<BasicBlock> blocks = new ArrayList<BasicBlock>();
+        int first = 0;
+        for (int i = 0; i < length; i ++) {
+            if (i + 1 == length || leaders[i + 1]) {
+                BasicBlock block = new BasicBlock(blocks.size(), first + 1, i + 1, findSuccessors(program, i));
+                for (int j = first; j <= i; j ++) {
+                    blockIndices[j] = block.getIndex();
+                    blockEnds[j] = i;
+                }
+                blocks.add(block);
+                first = i + 1;
+            }
+        }
+        this.blocks = Collections.unmodifiableList(blocks);
+    }
+
+    public static ProgramAnalysis analyze(Instruction[] program) {
+        return DecodedProgram.decode(program).getAnalysis();
+    }
+
+    static ProgramAnalysis analyze(DecodedProgram program) {
+        return new ProgramAnalysis(program);
+    }
+
+    public DecodedProgram getProgram() {
+        return program;
+    }
+
+    public List<BasicBlock> basicBlocks() {
+        return blocks;
+    }
+
+    public BasicBlock blockAt(int programCounter) {
+        if (programCounter < 1 || programCounter > blockIndices.length) {
+            throw new IllegalArgumentException("There is no instruction at line #" + programCounter + "!");
+        }
+        return blocks.get(blockIndices[programCounter - 1]);
+    }
+
+    public boolean isLeader(int programCounter) {
+        return programCounter >= 1 && programCounter <= blockIndices.length && leaders[programCounter - 1];
+    }
+
+    public static boolean endsBlock(int opcode) {
+        switch (opcode) {
+        case DecodedProgram.OP_JZERO:
+        case DecodedProgram.OP_JPOS:
+        case DecodedProgram.OP_JUMP:
+        case DecodedProgram.OP_HALT:
+        case DecodedProgram.OP_GENERIC:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static boolean[] findLeaders(DecodedProgram program) {
+        int length = program.length();
+        boolean[] leaders = new boolean[length + 1];
+        if (length > 0) {
+            leaders[0] = true;
+        }
+        for (int i = 0; i < length; i ++) {
+            if (!program.getInstruction(i).getLabels().isEmpty()) {
+                leaders[i] = true;
+            }
+            int opcode = program.getOpcode(i);
+            if (opcode == DecodedProgram.OP_JZERO || opcode == DecodedProgram.OP_JPOS || opcode == DecodedProgram.OP_JUMP) {
+                int target = (int) program.getOperand(i);
+                if (target >= 1 && target <= length) {
+                    leaders[target - 1] = true;
+                }
+            }
+            if (endsBlock(opcode)) {
+                leaders[i + 1] = true;
+            }
+        }
+        return leaders;
+    }
+
+    private static int[] findSuccessors(DecodedProgram program, int last) {
+        int next = last + 2;
+        switch (program.getOpcode(last)) {
+        case DecodedProgram.OP_JUMP:
+            return new int[] { (int) program.getOperand(last) };
+        case DecodedProgram.OP_JZERO:
+        case DecodedProgram.OP_JPOS:
+            return new int[] { (int) program.getOperand(last), next };
+        case DecodedProgram.OP_HALT:
+            return new int[0];
+        default:
+            return new int[] { next };
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.github.fontoura.jramach.ram.instructions.AddInstructionType;
+import com.github.fontoura.jramach.ram.instructions.HalfInstructionType;
+import com.github.fontoura.jramach.ram.instructions.HaltInstructionType;
+import com.github.fontoura.jramach.ram.instructions.JposInstructionType;
+import com.github.fontoura.jramach.ram.instructions.JumpInstructionType;
+import com.github.fontoura.jramach.ram.instructions.JzeroInstructionType;
+import com.github.fontoura.jramach.ram.instructions.LoadInstructionType;
+import com.github.fontoura.jramach.ram.instructions.NopInstructionType;
+import com.github.fontoura.jramach.ram.instructions.ReadInstructionType;
+import com.github.fontoura.jramach.ram.instructions.StoreInstructionType;
+import com.github.fontoura.jramach.ram.instructions.SubInstructionType;
+import com.github.fontoura.jramach.ram.instructions.WriteInstructionType;
+
+// generates random programs that always halt after a step count known up front.
+//
+// every loop is counted by a register nothing else touches, and both ways out of
+// every branch are padded to the same length, so the step count only depends on
+// the shape of the program and never on the values it computes.
+public final class ProgramGenerator {
+    public enum TapeAccess {
+        SEQUENTIAL,
+        STRIDED,
+        RANDOM
+    }
+
+    public static class Builder {
+        private int size = 100;
+        private int loopDepth = 2;
+        private int maxIterations = 8;
+        private double branchDensity = 0.2;
+        private double tapeDensity = 0.2;
+        private int registerCount = 4;
+        private int tapeLength = 64;
+        private TapeAccess tapeAccess = TapeAccess.SEQUENTIAL;
+        // zero until set, which picks DEFAULT_STRIDE, or the whole tape on shorter ones.
+        private int stride;
+
+        public Builder() {}
+
+        // the number of instructions to aim for; the program may overshoot it slightly.
+        public Builder size(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("The program must have at least one instruction!");
+            }
+            this.size = size;
+            return this;
+        }
+
+        public Builder loopDepth(int loopDepth) {
+            if (loopDepth < 0) {
+                throw new IllegalArgumentException("The loop depth must not be negative!");
+            }
+            this.loopDepth = loopDepth;
+            return this;
+        }
+
+        // each loop runs between one and this many times.
+        public Builder maxIterations(int maxIterations) {
+            if (maxIterations < 1) {
+                throw new IllegalArgumentException("Loops must run at least once!");
+            }
+            this.maxIterations = maxIterations;
+            return this;
+        }
+
+        // the chance of each statement being a two-way branch.
+        public Builder branchDensity(double branchDensity) {
+            if (!(branchDensity >= 0 && branchDensity <= 1)) {
+                throw new IllegalArgumentException("The branch density must be between 0 and 1!");
+            }
+            this.branchDensity = branchDensity;
+            return this;
+        }
+
+        // the chance of each statement that is not a branch touching the tape.
+        public Builder tapeDensity(double tapeDensity) {
+            if (!(tapeDensity >= 0 && tapeDensity <= 1)) {
+                throw new IllegalArgumentException("The tape density must be between 0 and 1!");
+            }
+            this.tapeDensity = tapeDensity;
+            return this;
+        }
+
+        // the number of registers holding data, not counting the ones for loops and tape addresses.
+        public Builder registerCount(int registerCount) {
+            if (registerCount < 1) {
+                throw new IllegalArgumentException("There must be at least one register!");
+            }
+            this.registerCount = registerCount;
+            return this;
+        }
+
+        public Builder tapeLength(int tapeLength) {
+            if (tapeLength < 1) {
+                throw new IllegalArgumentException("The tape must have at least one item!");
+            }
+            this.tapeLength = tapeLength;
+            return this;
+        }
+
+        public Builder tapeAccess(TapeAccess tapeAccess) {
+            if (tapeAccess == null) {
+                throw new IllegalArgumentException("The tape access pattern must not be null!");
+            }
+            this.tapeAccess = tapeAccess;
+            return this;
+        }
+
+        // only used by strided access.
+        public Builder stride(int stride) {
+            if (stride < 1) {
+                throw new IllegalArgumentException("The stride must be positive!");
+            }
+            this.stride = stride;
+            return this;
+        }
+
+        public ProgramGenerator build() {
+            if (tapeAccess == TapeAccess.STRIDED && stride > tapeLength) {
+                throw new IllegalArgumentException("The stride must not be longer than the tape!");
+            }
+            return new ProgramGenerator(this);
+        }
+    }
+
+    private static final String NOP = NopInstructionType.MNEMONIC.toUpperCase();
+    private static final String ADD = AddInstructionType.MNEMONIC.toUpperCase();
+    private static final String SUB = SubInstructionType.MNEMONIC.toUpperCase();
+    private static final String HALF = HalfInstructionType.MNEMONIC.toUpperCase();
+    private static final String LOAD = LoadInstructionType.MNEMONIC.toUpperCase();
+    private static final String STORE = StoreInstructionType.MNEMONIC.toUpperCase();
+    private static final String READ = ReadInstructionType.MNEMONIC.toUpperCase();
+    private static final String WRITE = WriteInstructionType.MNEMONIC.toUpperCase();
+    private static final String JZERO = JzeroInstructionType.MNEMONIC.toUpperCase();
+    private static final String JPOS = JposInstructionType.MNEMONIC.toUpperCase();
+    private static final String JUMP = JumpInstructionType.MNEMONIC.toUpperCase();
+    private static final String HALT = HaltInstructionType.MNEMONIC.toUpperCase();
+
+    private static final int DEFAULT_STRIDE = 7;
+
+    // load, store, and the four instructions closing the loop.
+    private static final int LOOP_OVERHEAD = 6;
+
+    // chance of a block getting one more loop after its first one.
+    private static final double EXTRA_LOOP_CHANCE = 0.1;
+
+    private final int size;
+    private final int loopDepth;
+    private final int maxIterations;
+    private final double branchDensity;
+    private final double tapeDensity;
+    private final int registerCount;
+    private final int tapeLength;
+    private final TapeAccess tapeAccess;
+    private final int stride;
+
+    private ProgramGenerator(Builder builder) {
+        this.size = builder.size;
+        this.loopDepth = builder.loopDepth;
+        this.maxIterations = builder.maxIterations;
+        this.branchDensity = builder.branchDensity;
+        this.tapeDensity = builder.tapeDensity;
+        this.registerCount = builder.registerCount;
+        this.tapeLength = builder.tapeLength;
+        this.tapeAccess = builder.tapeAccess;
+        this.stride = builder.stride > 0 ? builder.stride : Math.min(DEFAULT_STRIDE, builder.tapeLength);
+    }
+
+    public GeneratedProgram generate(long seed) {
+        Generation generation = new Generation(new Random(seed));
+        Fragment program = new Fragment();
+
+        // data registers come first, then the tape address, then one counter per loop level.
+        program.emit(LOAD + " 0");
+        program.emit(STORE + " R" + generation.addressRegister);
+        long steps = 2;
+
+        steps += generation.block(program, 0, Math.max(1, size - 3), true);
+
+        program.emit(HALT);
+        steps ++;
+
+        String source = program.toString();
+        Instruction[] instructions = Assembler.compile(source);
+        return new GeneratedProgram(source, instructions, steps, registerCount + 1 + loopDepth, tapeLength);
+    }
+
+    private final class Generation {
+        private final Random random;
+        private final int addressRegister = registerCount + 1;
+        private int labelCount;
+
+        private Generation(Random random) {
+            this.random = random;
+        }
+
+        private long block(Fragment out, int depth, int budget, boolean allowLoops) {
+            long steps = 0;
+            int remaining = budget;
+            boolean nested = false;
+            while (remaining > 0) {
+                int before = out.size();
+                boolean looping;
+                if (!allowLoops || depth >= loopDepth || remaining <= LOOP_OVERHEAD) {
+                    looping = false;
+                } else if (!nested) {
+                    looping = random.nextDouble() < 0.25 || remaining <= budget / 2;
+                } else {
+                    looping = random.nextDouble() < EXTRA_LOOP_CHANCE;
+                }
+
+                if (looping) {
+                    // the first loop of a block takes most of what is left, so deeper levels have room to nest.
+                    int available = remaining - LOOP_OVERHEAD;
+                    int bodyBudget = !nested ? Math.max(1, available * 3 / 4) : 1 + random.nextInt(available);
+                    steps += loop(out, depth, bodyBudget);
+                    nested = true;
+                } else if (remaining > 4 && random.nextDouble() < branchDensity) {
+                    steps += branch(out, depth, remaining - 4);
+                } else if (random.nextDouble() < tapeDensity) {
+                    steps += tapeAccess(out);
+                } else {
+                    steps += arithmetic(out);
+                }
+                remaining -= out.size() - before;
+            }
+            return steps;
+        }
+
+        private long loop(Fragment out, int depth, int bodyBudget) {
+            int counter = registerCount + 2 + depth;
+            int iterations = 1 + random.nextInt(maxIterations);
+            String top = newLabel("loop");
+
+            out.emit(LOAD + " " + iterations);
+            out.emit(STORE + " R" + counter);
+            out.label(top);
+            long body = block(out, depth + 1, bodyBudget, true);
+            out.emit(LOAD + " R" + counter);
+            out.emit(SUB + " 1");
+            out.emit(STORE + " R" + counter);
+            out.emit(JPOS + " " + top);
+            return 2 + iterations * (body + 4);
+        }
+
+        private long branch(Fragment out, int depth, int available) {
+            // arms stay free of loops, so padding them to the same length stays cheap.
+            int armBudget = 1 + random.nextInt(Math.min(available, 16) / 2 + 1);
+            Fragment taken = new Fragment();
+            long takenSteps = block(taken, depth, armBudget, false);
+            Fragment fallen = new Fragment();
+            long fallenSteps = block(fallen, depth, armBudget, false);
+
+            // falling through also pays for the jump over the other arm.
+            while (takenSteps < fallenSteps + 1) {
+                taken.emit(NOP);
+                takenSteps ++;
+            }
+            while (fallenSteps + 1 < takenSteps) {
+                fallen.emit(NOP);
+                fallenSteps ++;
+            }
+
+            String other = newLabel("else");
+            String end = newLabel("end");
+            out.emit(LOAD + " " + dataRegister());
+            out.emit((random.nextBoolean() ? JZERO : JPOS) + " " + other);
+            out.append(fallen);
+            out.emit(JUMP + " " + end);
+            out.label(other);
+            out.append(taken);
+            out.label(end);
+            return 2 + takenSteps;
+        }
+
+        private long tapeAccess(Fragment out) {
+            int step;
+            switch (tapeAccess) {
+            case SEQUENTIAL:
+                step = 1;
+                break;
+            case STRIDED:
+                step = stride;
+                break;
+            default:
+                step = 1 + random.nextInt(tapeLength);
+                break;
+            }
+
+            // moves the address along and wraps it around the tape. the address never
+            // goes past twice the tape length, so one subtraction is always enough.
+            String keep = newLabel("keep");
+            String done = newLabel("done");
+            String address = "R" + addressRegister;
+            out.emit(LOAD + " " + address);
+            out.emit(ADD + " " + step);
+            out.emit(STORE + " " + address);
+            out.emit(SUB + " " + (tapeLength - 1));
+            out.emit(JZERO + " " + keep);
+            out.emit(LOAD + " " + address);
+            out.emit(SUB + " " + tapeLength);
+            out.emit(STORE + " " + address);
+            out.emit(JUMP + " " + done);
+            out.label(keep);
+            for (int i = 0; i < 4; i ++) {
+                out.emit(NOP);
+            }
+            out.label(done);
+
+            if (random.nextBoolean()) {
+                String register = dataRegister();
+                out.emit(READ + " " + address);
+                if (random.nextBoolean()) {
+                    out.emit(ADD + " " + register);
+                    out.emit(STORE + " " + register);
+                    return 12;
+                }
+                out.emit(STORE + " " + register);
+                return 11;
+            } else {
+                out.emit(LOAD + " " + dataRegister());
+                out.emit(WRITE + " " + address);
+                return 11;
+            }
+        }
+
+        private long arithmetic(Fragment out) {
+            out.emit(LOAD + " " + operand());
+            int operations = 1 + random.nextInt(3);
+            for (int i = 0; i < operations; i ++) {
+                switch (random.nextInt(3)) {
+                case 0:
+                    out.emit(ADD + " " + operand());
+                    break;
+                case 1:
+                    out.emit(SUB + " " + operand());
+                    break;
+                default:
+                    out.emit(HALF);
+                    break;
+                }
+            }
+            out.emit(STORE + " " + dataRegister());
+            return operations + 2;
+        }
+
+        private String operand() {
+            return random.nextBoolean() ? dataRegister() : String.valueOf(random.nextInt(16));
+        }
+
+        private String dataRegister() {
+            return "R" + (1 + random.nextInt(registerCount));
+        }
+
+        // labels must not start with "r", or the assembler takes them for registers.
+        private String newLabel(String prefix) {
+            labelCount ++;
+            return prefix + labelCount;
+        }
+    }
+
+    // a run of source lines, with the labels still waiting for an instruction to land on.
+    private static final class Fragment {
+        private final List<String> lines = new ArrayList<String>();
+        private final StringBuilder labels = new StringBuilder();
+
+        private void label(String label) {
+            labels.append(label).append(": ");
+        }
+
+        private void emit(String instruction) {
+            lines.add(labels + instruction);
+            labels.setLength(0);
+        }
+
+        private void append(Fragment other) {
+            for (String line : other.lines) {
+                emit(line);
+            }
+            labels.append(other.labels);
+        }
+
+        private int size() {
+            return lines.size();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < lines.size(); i ++) {
+                if (i > 0) {
+                    builder.append("\n");
+                }
+                builder.append(lines.get(i));
+            }
+            return builder.toString();
+        }
+    }
+}
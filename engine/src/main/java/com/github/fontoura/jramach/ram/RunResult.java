@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram;
+
+public final class RunResult {
+    public enum Status {
+        HALTED,
+        FAULTED,
+        BUDGET_EXHAUSTED,
+        DEADLINE_EXCEEDED,
+        CANCELLED
+    }
+
+    private final Status status;
+    private final long steps;
+    private final int programCounter;
+
+    public RunResult(Status status, long steps, int programCounter) {
+        this.status = status;
+        this.steps = steps;
+        this.programCounter = programCounter;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    public boolean isHalted() {
+        return status == Status.HALTED;
+    }
+
+    public boolean isFaulted() {
+        return status == Status.FAULTED;
+    }
+
+    public boolean isBudgetExhausted() {
+        return status == Status.BUDGET_EXHAUSTED;
+    }
+
+    public boolean isDeadlineExceeded() {
+        return status == Status.DEADLINE_EXCEEDED;
+    }
+
+    public boolean isCancelled() {
+        return status == Status.CANCELLED;
+    }
+
+    @Override
+    public String toString() {
+        return status + " after " + steps + " steps at line #" + programCounter;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram;
+
+public final class SuperinstructionFusion {
+    private SuperinstructionFusion() {}
+
+    public static DecodedProgram fuse(DecodedProgram program) {
+        int length = program.length();
+        int[] fusedOpcodes = new int[length];
+        for (int i = 0; i < length; i ++) {
+            fusedOpcodes[i] = lookForFusion(program, i);
+        }
+        return program.withFusedOpcodes(fusedOpcodes);
+    }
+
+    private static int lookForFusion(DecodedProgram program, int index) {
+        int first = program.getOpcode(index);
+        int second = index + 1 < program.length() ? program.getOpcode(index + 1) : -1;
+        int third = index + 2 < program.length() ? program.getOpcode(index + 2) : -1;
+
+        if (first == DecodedProgram.OP_LOAD) {
+            if (second == DecodedProgram.OP_ADD) {
+                return third == DecodedProgram.OP_STORE ? DecodedProgram.OP_LOAD_ADD_STORE : DecodedProgram.OP_LOAD_ADD;
+            } else if (second == DecodedProgram.OP_SUB) {
+                return third == DecodedProgram.OP_STORE ? DecodedProgram.OP_LOAD_SUB_STORE : DecodedProgram.OP_LOAD_SUB;
+            } else if (second == DecodedProgram.OP_WRITE) {
+                return DecodedProgram.OP_LOAD_WRITE;
+            }
+        } else if (first == DecodedProgram.OP_ADD) {
+            if (second == DecodedProgram.OP_JZERO) {
+                return DecodedProgram.OP_ADD_JZERO;
+            } else if (second == DecodedProgram.OP_JPOS) {
+                return DecodedProgram.OP_ADD_JPOS;
+            }
+        } else if (first == DecodedProgram.OP_SUB) {
+            if (second == DecodedProgram.OP_JZERO) {
+                return DecodedProgram.OP_SUB_JZERO;
+            } else if (second == DecodedProgram.OP_JPOS) {
+                return DecodedProgram.OP_SUB_JPOS;
+            }
+        } else if (first == DecodedProgram.OP_READ) {
+            if (second == DecodedProgram.OP_STORE) {
+                return DecodedProgram.OP_READ_STORE;
+            }
+        }
+        return first;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+public abstract class Tape {
+    public abstract int getLength();
+
+    // addresses are checked by the machine, so implementations may assume they are within the tape.
+    public abstract long get(int address);
+
+    public abstract void set(int address, long value);
+
+    // whether every value a machine of the given width stores, including the marker for values that outgrow a long, survives a round trip through the cells.
+    boolean canHold(WordWidth wordWidth) {
+        return true;
+    }
+
+    // how many cells actually take up memory, for the metrics; sparse storages report less than the length.
+    long getCellsInUse() {
+        return getLength();
+    }
+
+    // tapes too large to copy, like mapped files, are left out of snapshots and the undo log's checkpoints.
+    boolean canCheckpoint() {
+        return true;
+    }
+
+    // machine snapshots keep whatever this returns; by default it is a full copy of the cells.
+    Object checkpoint() {
+        long[] cells = new long[getLength()];
+        for (int i = 0; i < cells.length; i ++) {
+            cells[i] = get(i);
+        }
+        return cells;
+    }
+
+    void restore(Object state) {
+        long[] cells = (long[]) state;
+        for (int i = 0; i < cells.length; i ++) {
+            set(i, cells[i]);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+// per address counts for a tape of any length. like PagedTape, counts live in pages of a two-level
+// directory, and only pages holding an address that was counted are allocated.
+final class TapeCounters {
+    private static final int PAGE_BITS = PagedTape.PAGE_BITS;
+    private static final int PAGE_SIZE = PagedTape.PAGE_SIZE;
+    private static final int PAGE_MASK = PagedTape.PAGE_MASK;
+    private static final int DIRECTORY_BITS = PagedTape.DIRECTORY_BITS;
+    private static final int DIRECTORY_MASK = PagedTape.DIRECTORY_MASK;
+
+    private final long[][][] directories = new long[1 << (31 - PAGE_BITS - DIRECTORY_BITS)][][];
+    private int length;
+
+    TapeCounters() {}
+
+    void count(int address) {
+        long[][] directory = directories[address >>> (PAGE_BITS + DIRECTORY_BITS)];
+        if (directory == null) {
+            directory = new long[PagedTape.DIRECTORY_SIZE][];
+            directories[address >>> (PAGE_BITS + DIRECTORY_BITS)] = directory;
+        }
+        long[] page = directory[(address >>> PAGE_BITS) & DIRECTORY_MASK];
+        if (page == null) {
+            page = new long[PAGE_SIZE];
+            directory[(address >>> PAGE_BITS) & DIRECTORY_MASK] = page;
+        }
+        page[address & PAGE_MASK] ++;
+        if (address >= length) {
+            length = address + 1;
+        }
+    }
+
+    long get(int address) {
+        if (address < 0 || address >= length) {
+            return 0;
+        }
+        long[][] directory = directories[address >>> (PAGE_BITS + DIRECTORY_BITS)];
+        if (directory == null) {
+            return 0;
+        }
+        long[] page = directory[(address >>> PAGE_BITS) & DIRECTORY_MASK];
+        return page != null ? page[address & PAGE_MASK] : 0;
+    }
+
+    // one past the highest address counted.
+    int getLength() {
+        return length;
+    }
+
+    // the lowest counted address at or after the given one, or -1; untouched pages are skipped whole.
+    int nextCounted(int address) {
+        while (address >= 0 && address < length) {
+            long[][] directory = directories[address >>> (PAGE_BITS + DIRECTORY_BITS)];
+            if (directory == null) {
+                address = ((address >>> (PAGE_BITS + DIRECTORY_BITS)) + 1) << (PAGE_BITS + DIRECTORY_BITS);
+                continue;
+            }
+            long[] page = directory[(address >>> PAGE_BITS) & DIRECTORY_MASK];
+            if (page == null) {
+                address = ((address >>> PAGE_BITS) + 1) << PAGE_BITS;
+                continue;
+            }
+            if (page[address & PAGE_MASK] != 0) {
+                return address;
+            }
+            address ++;
+        }
+        return -1;
+    }
+
+    TapeCounters copy() {
+        TapeCounters copy = new TapeCounters();
+        for (int d = 0; d < directories.length; d ++) {
+            if (directories[d] != null) {
+                copy.directories[d] = new long[directories[d].length][];
+                for (int p = 0; p < directories[d].length; p ++) {
+                    if (directories[d][p] != null) {
+                        copy.directories[d][p] = directories[d][p].clone();
+                    }
+                }
+            }
+        }
+        copy.length = length;
+        return copy;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class UndoLog {
+    static final byte TARGET_NONE = 0;
+    static final byte TARGET_ACCUMULATOR = 1;
+    static final byte TARGET_REGISTER = 2;
+    static final byte TARGET_TAPE = 3;
+
+    // past this many checkpoints every other one is dropped and the interval doubles, so memory stays bounded.
+    private static final int MAX_CHECKPOINTS = 32;
+
+    private final int capacity;
+    private final int[] programCounters;
+    private final byte[] targetKinds;
+    private final int[] targets;
+    private final long[] values;
+    private Object[] bigValues;
+    private int head;
+    private int size;
+
+    private final List<MachineSnapshot> checkpoints = new ArrayList<MachineSnapshot>();
+    private long checkpointInterval;
+
+    UndoLog(int capacity) {
+        this.capacity = capacity;
+        programCounters = new int[capacity];
+        targetKinds = new byte[capacity];
+        targets = new int[capacity];
+        values = new long[capacity];
+        checkpointInterval = capacity;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // the oldest entry is overwritten once the ring is full.
+    void push(int programCounter, byte targetKind, int target, long value, Object bigValue) {
+        programCounters[head] = programCounter;
+        targetKinds[head] = targetKind;
+        targets[head] = target;
+        values[head] = value;
+        if (bigValue != null || bigValues != null) {
+            if (bigValues == null) {
+                bigValues = new Object[capacity];
+            }
+            bigValues[head] = bigValue;
+        }
+        head = head + 1 == capacity ? 0 : head + 1;
+        if (size < capacity) {
+            size ++;
+        }
+    }
+
+    // pop() moves to the newest entry, whose fields are then read through the accessors below.
+    void pop() {
+        head = head == 0 ? capacity - 1 : head - 1;
+        size --;
+    }
+
+    int programCounter() {
+        return programCounters[head];
+    }
+
+    byte targetKind() {
+        return targetKinds[head];
+    }
+
+    int target() {
+        return targets[head];
+    }
+
+    long value() {
+        return values[head];
+    }
+
+    Object bigValue() {
+        return bigValues == null ? null : bigValues[head];
+    }
+
+    void clearEntries() {
+        size = 0;
+        bigValues = null;
+    }
+
+    void clear() {
+        clearEntries();
+        checkpoints.clear();
+        checkpointInterval = capacity;
+    }
+
+    boolean wantsCheckpoint(long stepCount) {
+        return checkpoints.isEmpty() || stepCount % checkpointInterval == 0;
+    }
+
+    void addCheckpoint(MachineSnapshot checkpoint) {
+        // checkpoints at or past this one belong to a future that is being rewritten.
+        while (!checkpoints.isEmpty() && checkpoints.get(checkpoints.size() - 1).stepCount >= checkpoint.stepCount) {
+            checkpoints.remove(checkpoints.size() - 1);
+        }
+        checkpoints.add(checkpoint);
+        if (checkpoints.size() > MAX_CHECKPOINTS) {
+            checkpointInterval *= 2;
+            List<MachineSnapshot> kept = new ArrayList<MachineSnapshot>();
+            kept.add(checkpoints.get(0));
+            for (int i = 1; i < checkpoints.size(); i ++) {
+                if (checkpoints.get(i).stepCount % checkpointInterval == 0) {
+                    kept.add(checkpoints.get(i));
+                }
+            }
+            checkpoints.clear();
+            checkpoints.addAll(kept);
+        }
+    }
+
+    MachineSnapshot checkpointAtOrBefore(long stepCount) {
+        for (int i = checkpoints.size() - 1; i >= 0; i --) {
+            if (checkpoints.get(i).stepCount <= stepCount) {
+                return checkpoints.get(i);
+            }
+        }
+        return null;
+    }
+}
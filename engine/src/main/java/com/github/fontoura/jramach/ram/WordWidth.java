@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+public enum WordWidth {
+    INT {
+        @Override
+        public long add(long a, long b) {
+            return (int) (a + b);
+        }
+
+        @Override
+        public long subtract(long a, long b) {
+            return Math.max(0, (int) (a - b));
+        }
+
+        @Override
+        public long normalize(long value) {
+            return (int) value;
+        }
+    },
+    LONG {
+        @Override
+        public long add(long a, long b) {
+            return a + b;
+        }
+
+        @Override
+        public long subtract(long a, long b) {
+            return Math.max(0, a - b);
+        }
+
+        @Override
+        public long normalize(long value) {
+            return value;
+        }
+    },
+    ARBITRARY {
+        // values past 64 bits never reach these; the machine keeps them aside as BigIntegers.
+        @Override
+        public long add(long a, long b) {
+            return Math.addExact(a, b);
+        }
+
+        @Override
+        public long subtract(long a, long b) {
+            return Math.max(0, Math.subtractExact(a, b));
+        }
+
+        @Override
+        public long normalize(long value) {
+            return value;
+        }
+    };
+
+    public abstract long add(long a, long b);
+
+    public abstract long subtract(long a, long b);
+
+    public abstract long normalize(long value);
+}
@@ -51,6 +51,10 @@ public class AddInstructionType extends AbstractInstructionType {
     @Override
     public void execute(Machine machine, List<InstructionArgument> arguments) throws IllegalMachineOperationException {
         InstructionArgument argument = arguments.get(0);
-        machine.setAccumulator(machine.getAccumulator() + machine.resolveArgumentValue(argument));
+        add(machine, machine.resolveArgumentValue(argument));
+    }
+
+    static void add(Machine machine, long value) {
+        machine.setAccumulator(machine.getWordWidth().add(machine.getAccumulator(), value));
     }
 }
@@ -51,8 +51,12 @@ public class JposInstructionType extends AbstractInstructionType {
     @Override
     public void execute(Machine machine, List<InstructionArgument> arguments) throws IllegalMachineOperationException {
         InstructionArgument argument = arguments.get(0);
+        jumpIfPositive(machine, (int) machine.resolveArgumentValue(argument));
+    }
+
+    static void jumpIfPositive(Machine machine, int position) {
         if (machine.getAccumulator() > 0) {
-            machine.setProgramCounter(machine.resolveArgumentValue(argument));
+            machine.setProgramCounter(position);
         }
     }
 }
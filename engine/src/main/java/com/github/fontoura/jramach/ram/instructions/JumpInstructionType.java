@@ -51,6 +51,6 @@ public class JumpInstructionType extends AbstractInstructionType {
     @Override
     public void execute(Machine machine, List<InstructionArgument> arguments) throws IllegalMachineOperationException {
         InstructionArgument argument = arguments.get(0);
-        machine.setProgramCounter(machine.resolveArgumentValue(argument));
+        machine.setProgramCounter((int) machine.resolveArgumentValue(argument));
     }
 }
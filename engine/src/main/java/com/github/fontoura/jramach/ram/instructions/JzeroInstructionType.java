@@ -51,8 +51,12 @@ public class JzeroInstructionType extends AbstractInstructionType {
     @Override
     public void execute(Machine machine, List<InstructionArgument> arguments) throws IllegalMachineOperationException {
         InstructionArgument argument = arguments.get(0);
+        jumpIfZero(machine, (int) machine.resolveArgumentValue(argument));
+    }
+
+    static void jumpIfZero(Machine machine, int position) {
         if (machine.getAccumulator() == 0) {
-            machine.setProgramCounter(machine.resolveArgumentValue(argument));
+            machine.setProgramCounter(position);
         }
     }
 }
@@ -25,6 +25,7 @@ package com.github.fontoura.jramach.ram.instructions;
 
 import java.util.List;
 
+import com.github.fontoura.jramach.ram.FaultCode;
 import com.github.fontoura.jramach.ram.InstructionArgument;
 import com.github.fontoura.jramach.ram.Machine;
 import com.github.fontoura.jramach.ram.exceptions.IllegalInstructionArgumentException;
@@ -51,13 +52,14 @@ public class ReadInstructionType extends AbstractInstructionType {
     @Override
     public void execute(Machine machine, List<InstructionArgument> arguments) throws IllegalMachineOperationException {
         InstructionArgument argument = arguments.get(0);
-        int tapeAddress = machine.resolveArgumentValue(argument);
-        int tapeValue;
-        try {
-            tapeValue = machine.getTape(tapeAddress);
-        } catch (IllegalArgumentException e) {
-            throw new IllegalMachineOperationException(this, machine.getProgramCounter(), "Attempted to read from out-of-bounds tape item.");
+        read(machine, machine.resolveArgumentValue(argument));
+    }
+
+    static void read(Machine machine, long tapeAddress) {
+        if (tapeAddress < 0 || tapeAddress >= machine.getTapeLength()) {
+            machine.fault(FaultCode.TAPE_READ_OUT_OF_BOUNDS, tapeAddress);
+            return;
         }
-        machine.setAccumulator(tapeValue);
+        machine.setAccumulator(machine.getTape((int) tapeAddress));
     }
 }
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram.instructions;
+
+import java.util.List;
+
+import com.github.fontoura.jramach.ram.Instruction;
+import com.github.fontoura.jramach.ram.InstructionArgument;
+import com.github.fontoura.jramach.ram.InstructionType;
+import com.github.fontoura.jramach.ram.Machine;
+
+public final class SpecializedInstructions {
+    private SpecializedInstructions() {}
+
+    public static Instruction specialize(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments) {
+        // only the built-in types are specialized, as a subclass may have changed what they do.
+        Class<?> typeClass = instructionType.getClass();
+        if (arguments.size() != 1) {
+            return new Instruction(instructionType, labels, arguments);
+        }
+        InstructionArgument argument = arguments.get(0);
+        if (argument instanceof InstructionArgument.Literal) {
+            long value = ((InstructionArgument.Literal)argument).getValue();
+            if (typeClass == AddInstructionType.class) {
+                return new AddLiteral(instructionType, labels, arguments, value);
+            } else if (typeClass == SubInstructionType.class) {
+                return new SubLiteral(instructionType, labels, arguments, value);
+            } else if (typeClass == LoadInstructionType.class) {
+                return new LoadLiteral(instructionType, labels, arguments, value);
+            } else if (typeClass == ReadInstructionType.class) {
+                return new ReadLiteral(instructionType, labels, arguments, value);
+            } else if (typeClass == WriteInstructionType.class) {
+                return new WriteLiteral(instructionType, labels, arguments, value);
+            }
+        } else if (argument instanceof InstructionArgument.Register) {
+            int number = ((InstructionArgument.Register)argument).getNumber();
+            if (typeClass == AddInstructionType.class) {
+                return new AddRegister(instructionType, labels, arguments, number);
+            } else if (typeClass == SubInstructionType.class) {
+                return new SubRegister(instructionType, labels, arguments, number);
+            } else if (typeClass == LoadInstructionType.class) {
+                return new LoadRegister(instructionType, labels, arguments, number);
+            } else if (typeClass == StoreInstructionType.class) {
+                return new StoreRegister(instructionType, labels, arguments, number);
+            } else if (typeClass == ReadInstructionType.class) {
+                return new ReadRegister(instructionType, labels, arguments, number);
+            } else if (typeClass == WriteInstructionType.class) {
+                return new WriteRegister(instructionType, labels, arguments, number);
+            }
+        } else if (argument instanceof InstructionArgument.Label) {
+            int position = ((InstructionArgument.Label)argument).getPosition();
+            if (typeClass == JzeroInstructionType.class) {
+                return new JzeroLabel(instructionType, labels, arguments, position);
+            } else if (typeClass == JposInstructionType.class) {
+                return new JposLabel(instructionType, labels, arguments, position);
+            } else if (typeClass == JumpInstructionType.class) {
+                return new JumpLabel(instructionType, labels, arguments, position);
+            }
+        }
+        return new Instruction(instructionType, labels, arguments);
+    }
+
+    private static final class AddLiteral extends Instruction {
+        private final long value;
+
+        AddLiteral(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, long value) {
+            super(instructionType, labels, arguments);
+            this.value = value;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            AddInstructionType.add(machine, value);
+        }
+    }
+
+    private static final class AddRegister extends Instruction {
+        private final int number;
+
+        AddRegister(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, int number) {
+            super(instructionType, labels, arguments);
+            this.number = number;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            AddInstructionType.add(machine, machine.getRegister(number));
+        }
+    }
+
+    private static final class SubLiteral extends Instruction {
+        private final long value;
+
+        SubLiteral(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, long value) {
+            super(instructionType, labels, arguments);
+            this.value = value;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            SubInstructionType.subtract(machine, value);
+        }
+    }
+
+    private static final class SubRegister extends Instruction {
+        private final int number;
+
+        SubRegister(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, int number) {
+            super(instructionType, labels, arguments);
+            this.number = number;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            SubInstructionType.subtract(machine, machine.getRegister(number));
+        }
+    }
+
+    private static final class LoadLiteral extends Instruction {
+        private final long value;
+
+        LoadLiteral(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, long value) {
+            super(instructionType, labels, arguments);
+            this.value = value;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            machine.setAccumulator(value);
+        }
+    }
+
+    private static final class LoadRegister extends Instruction {
+        private final int number;
+
+        LoadRegister(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, int number) {
+            super(instructionType, labels, arguments);
+            this.number = number;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            machine.setAccumulator(machine.getRegister(number));
+        }
+    }
+
+    private static final class StoreRegister extends Instruction {
+        private final int number;
+
+        StoreRegister(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, int number) {
+            super(instructionType, labels, arguments);
+            this.number = number;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            machine.setRegister(number, machine.getAccumulator());
+        }
+    }
+
+    private static final class ReadLiteral extends Instruction {
+        private final long address;
+
+        ReadLiteral(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, long address) {
+            super(instructionType, labels, arguments);
+            this.address = address;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            ReadInstructionType.read(machine, address);
+        }
+    }
+
+    private static final class ReadRegister extends Instruction {
+        private final int number;
+
+        ReadRegister(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, int number) {
+            super(instructionType, labels, arguments);
+            this.number = number;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            ReadInstructionType.read(machine, machine.getRegister(number));
+        }
+    }
+
+    private static final class WriteLiteral extends Instruction {
+        private final long address;
+
+        WriteLiteral(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, long address) {
+            super(instructionType, labels, arguments);
+            this.address = address;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            WriteInstructionType.write(machine, address);
+        }
+    }
+
+    private static final class WriteRegister extends Instruction {
+        private final int number;
+
+        WriteRegister(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, int number) {
+            super(instructionType, labels, arguments);
+            this.number = number;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            WriteInstructionType.write(machine, machine.getRegister(number));
+        }
+    }
+
+    private static final class JzeroLabel extends Instruction {
+        private final int position;
+
+        JzeroLabel(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, int position) {
+            super(instructionType, labels, arguments);
+            this.position = position;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            JzeroInstructionType.jumpIfZero(machine, position);
+        }
+    }
+
+    private static final class JposLabel extends Instruction {
+        private final int position;
+
+        JposLabel(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, int position) {
+            super(instructionType, labels, arguments);
+            this.position = position;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            JposInstructionType.jumpIfPositive(machine, position);
+        }
+    }
+
+    private static final class JumpLabel extends Instruction {
+        private final int position;
+
+        JumpLabel(InstructionType instructionType, List<String> labels, List<InstructionArgument> arguments, int position) {
+            super(instructionType, labels, arguments);
+            this.position = position;
+        }
+
+        @Override
+        public void execute(Machine machine) {
+            machine.setProgramCounter(position);
+        }
+    }
+}
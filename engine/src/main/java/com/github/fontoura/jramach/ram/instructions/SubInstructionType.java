@@ -51,6 +51,10 @@ public class SubInstructionType extends AbstractInstructionType {
     @Override
     public void execute(Machine machine, List<InstructionArgument> arguments) throws IllegalMachineOperationException {
         InstructionArgument argument = arguments.get(0);
-        machine.setAccumulator(Math.max(0, machine.getAccumulator() - machine.resolveArgumentValue(argument)));
+        subtract(machine, machine.resolveArgumentValue(argument));
+    }
+
+    static void subtract(Machine machine, long value) {
+        machine.setAccumulator(machine.getWordWidth().subtract(machine.getAccumulator(), value));
     }
 }
@@ -25,6 +25,7 @@ package com.github.fontoura.jramach.ram.instructions;
 
 import java.util.List;
 
+import com.github.fontoura.jramach.ram.FaultCode;
 import com.github.fontoura.jramach.ram.InstructionArgument;
 import com.github.fontoura.jramach.ram.Machine;
 import com.github.fontoura.jramach.ram.exceptions.IllegalInstructionArgumentException;
@@ -51,11 +52,15 @@ public class WriteInstructionType extends AbstractInstructionType {
     @Override
     public void execute(Machine machine, List<InstructionArgument> arguments) throws IllegalMachineOperationException {
         InstructionArgument argument = arguments.get(0);
-        int tapeAddress = machine.resolveArgumentValue(argument);
-        try {
-            machine.setTape(tapeAddress, machine.getAccumulator());
-        } catch (IllegalArgumentException e) {
-            throw new IllegalMachineOperationException(this, machine.getProgramCounter(), "Attempted to write to out-of-bounds tape item.");
+        write(machine, machine.resolveArgumentValue(argument));
+    }
+
+    static void write(Machine machine, long tapeAddress) {
+        long value = machine.getAccumulator();
+        if (tapeAddress < 0 || tapeAddress >= machine.getTapeLength()) {
+            machine.fault(FaultCode.TAPE_WRITE_OUT_OF_BOUNDS, tapeAddress);
+            return;
         }
+        machine.setTape((int) tapeAddress, value);
     }
 }
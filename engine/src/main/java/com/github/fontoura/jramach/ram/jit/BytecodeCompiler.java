@@ -0,0 +1,412 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram.jit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.fontoura.jramach.ram.BasicBlock;
+import com.github.fontoura.jramach.ram.DecodedProgram;
+import com.github.fontoura.jramach.ram.ProgramAnalysis;
+import com.github.fontoura.jramach.ram.WordWidth;
+
+public final class BytecodeCompiler {
+    public static final int STATE_PROGRAM_COUNTER = 0;
+    public static final int STATE_HALTED = 1;
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String INTERFACE = "com/github/fontoura/jramach/ram/jit/CompiledProgram";
+    private static final String CLASS_PREFIX = "com/github/fontoura/jramach/ram/jit/generated/Program";
+    private static final String EXECUTE_DESCRIPTOR = "([J[J[IJ)J";
+
+    private static final int LOCAL_REGISTERS = 1;
+    private static final int LOCAL_TAPE = 2;
+    private static final int LOCAL_STATE = 3;
+    private static final int LOCAL_BUDGET = 4;
+    private static final int LOCAL_STEPS = 6;
+    private static final int LOCAL_TAPE_LENGTH = 8;
+    private static final int LOCAL_EXIT_PROGRAM_COUNTER = 9;
+    private static final int LOCAL_ADDRESS = 10;
+    private static final int LOCAL_FIRST_REGISTER = 12;
+
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    private final DecodedProgram program;
+    private final int registerCount;
+    private final boolean narrow;
+    private final int length;
+    private final int[] registerLocals;
+    private final ProgramAnalysis analysis;
+    private final List<Exit> exits = new ArrayList<Exit>();
+    private Label[] blockLabels;
+    private Label exitLabel;
+    private Label haltLabel;
+    private int maxLocals;
+
+    private BytecodeCompiler(DecodedProgram program, int registerCount, boolean narrow) {
+        this.program = program;
+        this.registerCount = registerCount;
+        this.narrow = narrow;
+        this.length = program.length();
+        this.registerLocals = new int[registerCount];
+        this.analysis = program.getAnalysis();
+    }
+
+    public static CompiledProgram compile(DecodedProgram program, int registerCount, WordWidth wordWidth) {
+        // the generated code indexes the registers without checking them.
+        program.checkRegisters(registerCount);
+        if (wordWidth == WordWidth.ARBITRARY) {
+            // values past 64 bits need the interpreter's BigInteger side tables.
+            return null;
+        }
+        String className = CLASS_PREFIX + classCounter.incrementAndGet();
+        try {
+            byte[] classFile = new BytecodeCompiler(program, registerCount, wordWidth == WordWidth.INT).generate(className);
+            ProgramClassLoader loader = new ProgramClassLoader(BytecodeCompiler.class.getClassLoader());
+            Class<?> compiledClass = loader.define(className.replace('/', '.'), classFile);
+            return (CompiledProgram) compiledClass.getConstructor().newInstance();
+        } catch (IllegalStateException e) {
+            // the program can't be compiled (e.g. it is too large for a single method).
+            return null;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    private byte[] generate(String className) {
+        ClassFileWriter writer = new ClassFileWriter(className, OBJECT, INTERFACE);
+
+        CodeBuffer constructor = writer.newCode();
+        constructor.local(CodeBuffer.ALOAD, 0);
+        constructor.invoke(CodeBuffer.INVOKESPECIAL, OBJECT, "<init>", "()V");
+        constructor.op(CodeBuffer.RETURN);
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", constructor, 1, 1);
+
+        CodeBuffer code = writer.newCode();
+        generateExecute(code);
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC, "execute", EXECUTE_DESCRIPTOR, code, 8, maxLocals);
+
+        return writer.toByteArray();
+    }
+
+    private void generateExecute(CodeBuffer code) {
+        allocateRegisters();
+
+        blockLabels = new Label[length];
+        for (int i = 0; i < length; i ++) {
+            if (analysis.isLeader(i + 1)) {
+                blockLabels[i] = new Label();
+            }
+        }
+        exitLabel = new Label();
+        haltLabel = new Label();
+        Label noProgressLabel = new Label();
+
+        // load registers into locals.
+        for (int r = 0; r < registerCount; r ++) {
+            if (registerLocals[r] >= 0) {
+                code.local(CodeBuffer.ALOAD, LOCAL_REGISTERS);
+                code.pushInt(r);
+                code.op(CodeBuffer.LALOAD);
+                code.local(CodeBuffer.LSTORE, registerLocals[r]);
+            }
+        }
+        code.local(CodeBuffer.ALOAD, LOCAL_TAPE);
+        code.op(CodeBuffer.ARRAYLENGTH);
+        code.local(CodeBuffer.ISTORE, LOCAL_TAPE_LENGTH);
+        code.pushLong(0L);
+        code.local(CodeBuffer.LSTORE, LOCAL_STEPS);
+
+        // dispatch on the entry program counter; only block leaders may be entered.
+        code.local(CodeBuffer.ALOAD, LOCAL_STATE);
+        code.pushInt(STATE_PROGRAM_COUNTER);
+        code.op(CodeBuffer.IALOAD);
+        code.local(CodeBuffer.ISTORE, LOCAL_EXIT_PROGRAM_COUNTER);
+        if (length > 0) {
+            Label[] targets = new Label[length];
+            for (int i = 0; i < length; i ++) {
+                targets[i] = blockLabels[i] != null ? blockLabels[i] : noProgressLabel;
+            }
+            code.local(CodeBuffer.ILOAD, LOCAL_EXIT_PROGRAM_COUNTER);
+            code.tableSwitch(1, length, noProgressLabel, targets);
+        }
+        code.mark(noProgressLabel);
+        code.jump(CodeBuffer.GOTO, exitLabel);
+
+        for (BasicBlock block : analysis.basicBlocks()) {
+            generateBlock(code, block.getFirstProgramCounter(), block.getLength());
+        }
+
+        // exits are emitted out of line, after all blocks.
+        for (Exit exit : exits) {
+            code.mark(exit.label);
+            if (exit.undoneSteps > 0) {
+                code.local(CodeBuffer.LLOAD, LOCAL_STEPS);
+                code.pushLong(exit.undoneSteps);
+                code.op(CodeBuffer.LSUB);
+                code.local(CodeBuffer.LSTORE, LOCAL_STEPS);
+            }
+            code.pushInt(exit.programCounter);
+            code.local(CodeBuffer.ISTORE, LOCAL_EXIT_PROGRAM_COUNTER);
+            code.jump(CodeBuffer.GOTO, exitLabel);
+        }
+
+        code.mark(haltLabel);
+        code.local(CodeBuffer.ALOAD, LOCAL_STATE);
+        code.pushInt(STATE_HALTED);
+        code.pushInt(1);
+        code.op(CodeBuffer.IASTORE);
+        code.pushInt(1);
+        code.local(CodeBuffer.ISTORE, LOCAL_EXIT_PROGRAM_COUNTER);
+
+        // write registers back and report where execution stopped.
+        code.mark(exitLabel);
+        for (int r = 0; r < registerCount; r ++) {
+            if (registerLocals[r] >= 0) {
+                code.local(CodeBuffer.ALOAD, LOCAL_REGISTERS);
+                code.pushInt(r);
+                code.local(CodeBuffer.LLOAD, registerLocals[r]);
+                code.op(CodeBuffer.LASTORE);
+            }
+        }
+        code.local(CodeBuffer.ALOAD, LOCAL_STATE);
+        code.pushInt(STATE_PROGRAM_COUNTER);
+        code.local(CodeBuffer.ILOAD, LOCAL_EXIT_PROGRAM_COUNTER);
+        code.op(CodeBuffer.IASTORE);
+        code.local(CodeBuffer.LLOAD, LOCAL_STEPS);
+        code.op(CodeBuffer.LRETURN);
+    }
+
+    private void allocateRegisters() {
+        for (int r = 0; r < registerCount; r ++) {
+            registerLocals[r] = -1;
+        }
+        int nextLocal = LOCAL_FIRST_REGISTER;
+        registerLocals[0] = nextLocal;
+        nextLocal += 2;
+        for (int i = 0; i < length; i ++) {
+            int register = registerOperand(i);
+            if (register >= 0 && register < registerCount && registerLocals[register] < 0) {
+                registerLocals[register] = nextLocal;
+                nextLocal += 2;
+            }
+        }
+        maxLocals = nextLocal;
+    }
+
+    private int registerOperand(int index) {
+        if (program.getOperandKind(index) == DecodedProgram.KIND_REGISTER) {
+            return (int) program.getOperand(index);
+        }
+        return -1;
+    }
+
+    private void generateBlock(CodeBuffer code, int leader, int blockLength) {
+        code.mark(blockLabels[leader - 1]);
+
+        // enter the block only if the whole block fits in the remaining budget.
+        Label enter = new Label();
+        code.local(CodeBuffer.LLOAD, LOCAL_BUDGET);
+        code.local(CodeBuffer.LLOAD, LOCAL_STEPS);
+        code.op(CodeBuffer.LSUB);
+        code.pushLong(blockLength);
+        code.op(CodeBuffer.LCMP);
+        code.jump(CodeBuffer.IFGE, enter);
+        code.jump(CodeBuffer.GOTO, exit(leader, 0));
+        code.mark(enter);
+        code.local(CodeBuffer.LLOAD, LOCAL_STEPS);
+        code.pushLong(blockLength);
+        code.op(CodeBuffer.LADD);
+        code.local(CodeBuffer.LSTORE, LOCAL_STEPS);
+
+        boolean fallsThrough = true;
+        for (int k = 0; k < blockLength; k ++) {
+            int pc = leader + k;
+            int undoneSteps = blockLength - k;
+            fallsThrough = generateInstruction(code, pc, undoneSteps);
+        }
+        if (fallsThrough) {
+            int next = leader + blockLength;
+            if (next > length) {
+                code.jump(CodeBuffer.GOTO, exit(next, 0));
+            }
+        }
+    }
+
+    private boolean generateInstruction(CodeBuffer code, int pc, int undoneSteps) {
+        int index = pc - 1;
+        int opcode = program.getOpcode(index);
+        int operandKind = program.getOperandKind(index);
+        long operand = program.getOperand(index);
+        int accumulator = registerLocals[0];
+
+        switch (opcode) {
+        case DecodedProgram.OP_NOP:
+            return true;
+        case DecodedProgram.OP_ADD:
+            code.local(CodeBuffer.LLOAD, accumulator);
+            pushOperand(code, operandKind, operand);
+            code.op(CodeBuffer.LADD);
+            narrow(code);
+            code.local(CodeBuffer.LSTORE, accumulator);
+            return true;
+        case DecodedProgram.OP_SUB:
+            code.pushLong(0L);
+            code.local(CodeBuffer.LLOAD, accumulator);
+            pushOperand(code, operandKind, operand);
+            code.op(CodeBuffer.LSUB);
+            narrow(code);
+            code.invoke(CodeBuffer.INVOKESTATIC, "java/lang/Math", "max", "(JJ)J");
+            code.local(CodeBuffer.LSTORE, accumulator);
+            return true;
+        case DecodedProgram.OP_HALF:
+            code.local(CodeBuffer.LLOAD, accumulator);
+            code.pushLong(2L);
+            code.op(CodeBuffer.LDIV);
+            code.local(CodeBuffer.LSTORE, accumulator);
+            return true;
+        case DecodedProgram.OP_LOAD:
+            pushOperand(code, operandKind, operand);
+            code.local(CodeBuffer.LSTORE, accumulator);
+            return true;
+        case DecodedProgram.OP_STORE:
+            code.local(CodeBuffer.LLOAD, accumulator);
+            code.local(CodeBuffer.LSTORE, registerLocals[(int) operand]);
+            return true;
+        case DecodedProgram.OP_READ:
+            checkAddress(code, operandKind, operand, exit(pc, undoneSteps));
+            code.local(CodeBuffer.ALOAD, LOCAL_TAPE);
+            code.local(CodeBuffer.LLOAD, LOCAL_ADDRESS);
+            code.op(CodeBuffer.L2I);
+            code.op(CodeBuffer.LALOAD);
+            code.local(CodeBuffer.LSTORE, accumulator);
+            return true;
+        case DecodedProgram.OP_WRITE:
+            checkAddress(code, operandKind, operand, exit(pc, undoneSteps));
+            code.local(CodeBuffer.ALOAD, LOCAL_TAPE);
+            code.local(CodeBuffer.LLOAD, LOCAL_ADDRESS);
+            code.op(CodeBuffer.L2I);
+            code.local(CodeBuffer.LLOAD, accumulator);
+            code.op(CodeBuffer.LASTORE);
+            return true;
+        case DecodedProgram.OP_JZERO:
+            code.local(CodeBuffer.LLOAD, accumulator);
+            code.pushLong(0L);
+            code.op(CodeBuffer.LCMP);
+            code.jump(CodeBuffer.IFEQ, jumpTarget((int) operand));
+            generateFallThrough(code, pc);
+            return false;
+        case DecodedProgram.OP_JPOS:
+            code.local(CodeBuffer.LLOAD, accumulator);
+            code.pushLong(0L);
+            code.op(CodeBuffer.LCMP);
+            code.jump(CodeBuffer.IFGT, jumpTarget((int) operand));
+            generateFallThrough(code, pc);
+            return false;
+        case DecodedProgram.OP_JUMP:
+            code.jump(CodeBuffer.GOTO, jumpTarget((int) operand));
+            return false;
+        case DecodedProgram.OP_HALT:
+            code.jump(CodeBuffer.GOTO, haltLabel);
+            return false;
+        default:
+            // instructions the compiler does not understand are left to the interpreter.
+            code.jump(CodeBuffer.GOTO, exit(pc, undoneSteps));
+            return false;
+        }
+    }
+
+    private void narrow(CodeBuffer code) {
+        // 32-bit machines wrap around just like int arithmetic would.
+        if (narrow) {
+            code.op(CodeBuffer.L2I);
+            code.op(CodeBuffer.I2L);
+        }
+    }
+
+    private void generateFallThrough(CodeBuffer code, int pc) {
+        if (pc + 1 > length) {
+            code.jump(CodeBuffer.GOTO, exit(pc + 1, 0));
+        }
+    }
+
+    private void pushOperand(CodeBuffer code, int operandKind, long operand) {
+        if (operandKind == DecodedProgram.KIND_REGISTER) {
+            code.local(CodeBuffer.LLOAD, registerLocals[(int) operand]);
+        } else {
+            code.pushLong(narrow ? (int) operand : operand);
+        }
+    }
+
+    private void checkAddress(CodeBuffer code, int operandKind, long operand, Label outOfBounds) {
+        pushOperand(code, operandKind, operand);
+        code.local(CodeBuffer.LSTORE, LOCAL_ADDRESS);
+        code.local(CodeBuffer.LLOAD, LOCAL_ADDRESS);
+        code.pushLong(0L);
+        code.op(CodeBuffer.LCMP);
+        code.jump(CodeBuffer.IFLT, outOfBounds);
+        code.local(CodeBuffer.LLOAD, LOCAL_ADDRESS);
+        code.local(CodeBuffer.ILOAD, LOCAL_TAPE_LENGTH);
+        code.op(CodeBuffer.I2L);
+        code.op(CodeBuffer.LCMP);
+        code.jump(CodeBuffer.IFGE, outOfBounds);
+    }
+
+    private Label jumpTarget(int target) {
+        if (target >= 1 && target <= length) {
+            return blockLabels[target - 1];
+        }
+        return exit(target, 0);
+    }
+
+    private Label exit(int programCounter, int undoneSteps) {
+        Exit exit = new Exit(programCounter, undoneSteps);
+        exits.add(exit);
+        return exit.label;
+    }
+
+    private static class Exit {
+        private final Label label = new Label();
+        private final int programCounter;
+        private final int undoneSteps;
+
+        Exit(int programCounter, int undoneSteps) {
+            this.programCounter = programCounter;
+            this.undoneSteps = undoneSteps;
+        }
+    }
+
+    private static class ProgramClassLoader extends ClassLoader {
+        ProgramClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    // version 49 classes are checked by the type-inferencing verifier, so no stack map frames are needed.
+    private static final int MAJOR_VERSION = 49;
+
+    private final ConstantPool constantPool = new ConstantPool();
+    private final String className;
+    private final String superClassName;
+    private final String[] interfaceNames;
+    private final List<byte[]> methods = new ArrayList<byte[]>();
+
+    ClassFileWriter(String className, String superClassName, String... interfaceNames) {
+        this.className = className;
+        this.superClassName = superClassName;
+        this.interfaceNames = interfaceNames;
+    }
+
+    CodeBuffer newCode() {
+        return new CodeBuffer(constantPool);
+    }
+
+    void addMethod(int accessFlags, String name, String descriptor, CodeBuffer code, int maxStack, int maxLocals) {
+        byte[] bytecode = code.toByteArray();
+        if (bytecode.length > 0xffff) {
+            throw new IllegalStateException("Method " + name + " is too large!");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeShort(accessFlags);
+            output.writeShort(constantPool.utf8(name));
+            output.writeShort(constantPool.utf8(descriptor));
+            output.writeShort(1);
+            output.writeShort(constantPool.utf8("Code"));
+            output.writeInt(12 + bytecode.length);
+            output.writeShort(maxStack);
+            output.writeShort(maxLocals);
+            output.writeInt(bytecode.length);
+            output.write(bytecode);
+            output.writeShort(0);
+            output.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        int thisClass = constantPool.classReference(className);
+        int superClass = constantPool.classReference(superClassName);
+        int[] interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i ++) {
+            interfaces[i] = constantPool.classReference(interfaceNames[i]);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeInt(0xcafebabe);
+            output.writeShort(0);
+            output.writeShort(MAJOR_VERSION);
+            constantPool.writeTo(output);
+            output.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            output.writeShort(thisClass);
+            output.writeShort(superClass);
+            output.writeShort(interfaces.length);
+            for (int i = 0; i < interfaces.length; i ++) {
+                output.writeShort(interfaces[i]);
+            }
+            output.writeShort(0);
+            output.writeShort(methods.size());
+            for (byte[] method : methods) {
+                output.write(method);
+            }
+            output.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
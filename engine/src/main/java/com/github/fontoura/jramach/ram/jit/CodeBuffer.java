@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram.jit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class CodeBuffer {
+    static final int ICONST_0 = 0x03;
+    static final int LCONST_0 = 0x09;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int LLOAD = 0x16;
+    static final int ALOAD = 0x19;
+    static final int IALOAD = 0x2e;
+    static final int LALOAD = 0x2f;
+    static final int ISTORE = 0x36;
+    static final int LSTORE = 0x37;
+    static final int IASTORE = 0x4f;
+    static final int LASTORE = 0x50;
+    static final int POP = 0x57;
+    static final int IADD = 0x60;
+    static final int LADD = 0x61;
+    static final int ISUB = 0x64;
+    static final int LSUB = 0x65;
+    static final int IDIV = 0x6c;
+    static final int LDIV = 0x6d;
+    static final int I2L = 0x85;
+    static final int L2I = 0x88;
+    static final int LCMP = 0x94;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPGE = 0xa2;
+    static final int GOTO = 0xa7;
+    static final int TABLESWITCH = 0xaa;
+    static final int LRETURN = 0xad;
+    static final int RETURN = 0xb1;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int ARRAYLENGTH = 0xbe;
+    static final int WIDE = 0xc4;
+
+    private final ConstantPool constantPool;
+    private final List<Label> labels = new ArrayList<Label>();
+    private byte[] data = new byte[256];
+    private int size;
+
+    CodeBuffer(ConstantPool constantPool) {
+        this.constantPool = constantPool;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void op(int opcode) {
+        u1(opcode);
+    }
+
+    void u1(int value) {
+        ensureCapacity(1);
+        data[size ++] = (byte) value;
+    }
+
+    void u2(int value) {
+        ensureCapacity(2);
+        data[size ++] = (byte) (value >>> 8);
+        data[size ++] = (byte) value;
+    }
+
+    void u4(int value) {
+        ensureCapacity(4);
+        data[size ++] = (byte) (value >>> 24);
+        data[size ++] = (byte) (value >>> 16);
+        data[size ++] = (byte) (value >>> 8);
+        data[size ++] = (byte) value;
+    }
+
+    void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op(BIPUSH);
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op(SIPUSH);
+            u2(value);
+        } else {
+            op(LDC_W);
+            u2(constantPool.integer(value));
+        }
+    }
+
+    void pushLong(long value) {
+        if (value == 0L || value == 1L) {
+            op(LCONST_0 + (int) value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            pushInt((int) value);
+            op(I2L);
+        } else {
+            op(LDC2_W);
+            u2(constantPool.longValue(value));
+        }
+    }
+
+    void local(int opcode, int index) {
+        if (index > 0xff) {
+            op(WIDE);
+            op(opcode);
+            u2(index);
+        } else {
+            op(opcode);
+            u1(index);
+        }
+    }
+
+    void invoke(int opcode, String owner, String name, String descriptor) {
+        op(opcode);
+        u2(constantPool.methodReference(owner, name, descriptor));
+    }
+
+    void mark(Label label) {
+        label.mark(size);
+    }
+
+    void jump(int opcode, Label target) {
+        int instructionPosition = size;
+        op(opcode);
+        reference(target, instructionPosition, false);
+        u2(0);
+    }
+
+    void tableSwitch(int low, int high, Label defaultTarget, Label[] targets) {
+        int instructionPosition = size;
+        op(TABLESWITCH);
+        while (size % 4 != 0) {
+            u1(0);
+        }
+        reference(defaultTarget, instructionPosition, true);
+        u4(0);
+        u4(low);
+        u4(high);
+        for (int i = 0; i < targets.length; i ++) {
+            reference(targets[i], instructionPosition, true);
+            u4(0);
+        }
+    }
+
+    byte[] toByteArray() {
+        for (Label label : labels) {
+            if (!label.isMarked()) {
+                throw new IllegalStateException("Label has not been marked!");
+            }
+            for (int[] reference : label.getReferences()) {
+                int offset = label.getPosition() - reference[0];
+                int patchPosition = reference[1];
+                if (reference[2] != 0) {
+                    data[patchPosition] = (byte) (offset >>> 24);
+                    data[patchPosition + 1] = (byte) (offset >>> 16);
+                    data[patchPosition + 2] = (byte) (offset >>> 8);
+                    data[patchPosition + 3] = (byte) offset;
+                } else {
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        throw new IllegalStateException("Branch offset " + offset + " does not fit in 16 bits!");
+                    }
+                    data[patchPosition] = (byte) (offset >>> 8);
+                    data[patchPosition + 1] = (byte) offset;
+                }
+            }
+        }
+        return Arrays.copyOf(data, size);
+    }
+
+    private void reference(Label label, int instructionPosition, boolean wide) {
+        if (label.getReferences().isEmpty()) {
+            labels.add(label);
+        }
+        label.reference(instructionPosition, size, wide);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+final class ConstantPool {
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final Map<String, Integer> entries = new HashMap<String, Integer>();
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream output = new DataOutputStream(bytes);
+    private int count = 1;
+
+    int utf8(String value) {
+        String key = "U" + value;
+        Integer index = entries.get(key);
+        if (index == null) {
+            try {
+                output.writeByte(CONSTANT_UTF8);
+                output.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    int classReference(String internalName) {
+        String key = "C" + internalName;
+        Integer index = entries.get(key);
+        if (index == null) {
+            int nameIndex = utf8(internalName);
+            try {
+                output.writeByte(CONSTANT_CLASS);
+                output.writeShort(nameIndex);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    int integer(int value) {
+        String key = "I" + value;
+        Integer index = entries.get(key);
+        if (index == null) {
+            try {
+                output.writeByte(CONSTANT_INTEGER);
+                output.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    int longValue(long value) {
+        String key = "J" + value;
+        Integer index = entries.get(key);
+        if (index == null) {
+            try {
+                output.writeByte(CONSTANT_LONG);
+                output.writeLong(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add(key, 2);
+        }
+        return index;
+    }
+
+    int methodReference(String owner, String name, String descriptor) {
+        String key = "M" + owner + "." + name + descriptor;
+        Integer index = entries.get(key);
+        if (index == null) {
+            int classIndex = classReference(owner);
+            int nameAndTypeIndex = nameAndType(name, descriptor);
+            try {
+                output.writeByte(CONSTANT_METHODREF);
+                output.writeShort(classIndex);
+                output.writeShort(nameAndTypeIndex);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        String key = "N" + name + ":" + descriptor;
+        Integer index = entries.get(key);
+        if (index == null) {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            try {
+                output.writeByte(CONSTANT_NAME_AND_TYPE);
+                output.writeShort(nameIndex);
+                output.writeShort(descriptorIndex);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = add(key, 1);
+        }
+        return index;
+    }
+
+    private int add(String key, int slots) {
+        int index = count;
+        if (index + slots > 0xffff) {
+            throw new IllegalStateException("The constant pool is full!");
+        }
+        entries.put(key, index);
+        count += slots;
+        return index;
+    }
+
+    void writeTo(DataOutputStream classFile) throws IOException {
+        classFile.writeShort(count);
+        bytes.writeTo(classFile);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.github.fontoura.jramach.ram.jit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class Label {
+    private int position = -1;
+    private final List<int[]> references = new ArrayList<int[]>();
+
+    boolean isMarked() {
+        return position >= 0;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    void mark(int position) {
+        if (this.position >= 0) {
+            throw new IllegalStateException("Label has already been marked!");
+        }
+        this.position = position;
+    }
+
+    void reference(int instructionPosition, int patchPosition, boolean wide) {
+        references.add(new int[] { instructionPosition, patchPosition, wide ? 1 : 0 });
+    }
+
+    List<int[]> getReferences() {
+        return references;
+    }
+}
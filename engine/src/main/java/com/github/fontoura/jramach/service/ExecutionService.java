@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import com.github.fontoura.jramach.ram.DecodedProgram;
+import com.github.fontoura.jramach.ram.ExecutionEngine;
+import com.github.fontoura.jramach.ram.Machine;
+import com.github.fontoura.jramach.ram.MachineMetrics;
+import com.github.fontoura.jramach.ram.RunResult;
+import com.github.fontoura.jramach.ram.WordWidth;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public final class ExecutionService {
+    public static final int DEFAULT_PORT = 8417;
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    private static final int DEFAULT_TAPE_LENGTH = 256;
+    private static final int DEFAULT_REGISTER_COUNT = 16;
+    private static final long DEFAULT_MAX_STEPS = 100000000L;
+    // the whole tape goes back in the response, and every job allocates its own, so both are kept small.
+    private static final int MAX_TAPE_LENGTH = 1 << 20;
+    private static final int MAX_REGISTER_COUNT = 1 << 16;
+    private static final int MAX_SOURCE_LENGTH = 1 << 20;
+    private static final int PROGRAM_CACHE_CAPACITY = 1024;
+
+    private final HttpServer server;
+    private final int queueCapacity;
+    private final ExecutorService jobs;
+    private final Semaphore slots;
+    private final ProgramCache programs;
+
+    public ExecutionService(int port) throws IOException {
+        this(port, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public ExecutionService(int port, int queueCapacity) throws IOException {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("The queue must hold at least one job!");
+        }
+        this.queueCapacity = queueCapacity;
+        this.jobs = JobExecutors.create();
+        this.slots = new Semaphore(queueCapacity);
+        this.programs = new ProgramCache(PROGRAM_CACHE_CAPACITY);
+
+        // never reachable from outside this host.
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/run", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                admit(exchange);
+            }
+        });
+        // the dispatcher thread only admits jobs, everything else happens on the job threads.
+        this.server.setExecutor(null);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        MachineMetrics.register();
+        ExecutionService service = new ExecutionService(port);
+        service.start();
+        System.out.println("Listening on http://127.0.0.1:" + service.getPort() + "/run");
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        jobs.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int getQueuedJobCount() {
+        return queueCapacity - slots.availablePermits();
+    }
+
+    public int getCachedProgramCount() {
+        return programs.size();
+    }
+
+    private void admit(final HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, error("Programs must be submitted with POST!"));
+            return;
+        }
+        // backpressure: when the queue is full the client is told to come back later.
+        if (!slots.tryAcquire()) {
+            reject(exchange);
+            return;
+        }
+        try {
+            jobs.execute(new Runnable() {
+                public void run() {
+                    try {
+                        runJob(exchange);
+                    } finally {
+                        slots.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            reject(exchange);
+        }
+    }
+
+    private void reject(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        respond(exchange, 503, error("The job queue is full!"));
+    }
+
+    private void runJob(HttpExchange exchange) {
+        try {
+            try {
+                respond(exchange, 200, execute(exchange));
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, error(e.getMessage()));
+            } catch (RuntimeException e) {
+                respond(exchange, 500, error("The job failed: " + e));
+            } catch (Error e) {
+                respond(exchange, 500, error("The job failed: " + e));
+            }
+        } catch (IOException e) {
+            // the client went away.
+        } finally {
+            // whatever happened above, the client must not be left waiting.
+            exchange.close();
+        }
+    }
+
+    private String execute(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        String source = readSource(exchange);
+
+        BigInteger[] input = parseTape(parameters.get("tape"));
+        int tapeLength = parseInt(parameters, "tapeLength", Math.max(DEFAULT_TAPE_LENGTH, input.length));
+        int registerCount = parseInt(parameters, "registers", DEFAULT_REGISTER_COUNT);
+        if (tapeLength < 0 || tapeLength > MAX_TAPE_LENGTH) {
+            throw new IllegalArgumentException("The tape length must be between 0 and " + MAX_TAPE_LENGTH + "!");
+        }
+        if (registerCount < 1 || registerCount > MAX_REGISTER_COUNT) {
+            throw new IllegalArgumentException("The register count must be between 1 and " + MAX_REGISTER_COUNT + "!");
+        }
+        long maxSteps = parameters.containsKey("steps") ? Long.parseLong(parameters.get("steps")) : DEFAULT_MAX_STEPS;
+        WordWidth wordWidth = parameters.containsKey("width") ? WordWidth.valueOf(parameters.get("width").toUpperCase()) : WordWidth.INT;
+        if (input.length > tapeLength) {
+            throw new IllegalArgumentException("The input does not fit the tape!");
+        }
+        if (maxSteps < 0) {
+            throw new IllegalArgumentException("The step budget must not be negative!");
+        }
+
+        DecodedProgram program = programs.get(source, wordWidth);
+        Machine machine = new Machine(tapeLength, registerCount, false, wordWidth);
+        // short jobs would spend longer compiling than running.
+        machine.setExecutionEngine(ExecutionEngine.DECODED);
+        // long jobs give up their thread every so often, so they do not starve the short ones.
+        machine.setYielding(true);
+        machine.setProgram(program);
+        for (int i = 0; i < input.length; i ++) {
+            machine.setBigTape(i, input[i]);
+        }
+
+        // a single run, so the metrics and flight recorder see one outcome per job.
+        RunResult result = machine.run(maxSteps);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"status\":\"").append(result.getStatus()).append('"');
+        sb.append(",\"steps\":").append(machine.getStepCount());
+        sb.append(",\"programCounter\":").append(machine.getProgramCounter());
+        sb.append(",\"accumulator\":").append(machine.getBigRegister(0));
+        if (machine.isFaulted()) {
+            sb.append(",\"faultCode\":\"").append(machine.getFaultCode()).append('"');
+            sb.append(",\"faultAddress\":").append(machine.getFaultAddress());
+        }
+        sb.append(",\"tape\":[");
+        for (int i = 0; i < tapeLength; i ++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(machine.getBigTape(i));
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private static String readSource(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+            if (out.size() > MAX_SOURCE_LENGTH) {
+                throw new IllegalArgumentException("The program is too long!");
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<String, String>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int indexOfEquals = pair.indexOf('=');
+            if (indexOfEquals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, indexOfEquals), "UTF-8"), URLDecoder.decode(pair.substring(indexOfEquals + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    private static int parseInt(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static BigInteger[] parseTape(String tape) {
+        if (tape == null || tape.trim().length() == 0) {
+            return new BigInteger[0];
+        }
+        String[] cells = tape.split(",");
+        BigInteger[] values = new BigInteger[cells.length];
+        for (int i = 0; i < cells.length; i ++) {
+            values[i] = new BigInteger(cells[i].trim());
+        }
+        return values;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.fontoura.jramach.ram.Assembler;
+import com.github.fontoura.jramach.ram.DecodedProgram;
+import com.github.fontoura.jramach.ram.WordWidth;
+
+final class ProgramCache {
+    private final Map<String, DecodedProgram> programs;
+
+    ProgramCache(final int capacity) {
+        // access ordered, so the least recently submitted program goes first.
+        this.programs = new LinkedHashMap<String, DecodedProgram>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DecodedProgram> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // which literals are accepted depends on the word width, so programs are kept apart by it.
+    DecodedProgram get(String source, WordWidth wordWidth) {
+        String key = wordWidth + ":" + hash(source);
+        synchronized (programs) {
+            DecodedProgram program = programs.get(key);
+            if (program != null) {
+                return program;
+            }
+        }
+        // compile outside the lock; two submissions racing on the same source just compile twice.
+        DecodedProgram program = DecodedProgram.decode(Assembler.compile(source, wordWidth));
+        synchronized (programs) {
+            programs.put(key, program);
+        }
+        return program;
+    }
+
+    int size() {
+        synchronized (programs) {
+            return programs.size();
+        }
+    }
+
+    private static String hash(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < digest.length; i ++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available!", e);
+        }
+    }
+}
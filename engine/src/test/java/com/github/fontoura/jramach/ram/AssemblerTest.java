@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AssemblerTest {
+    @Test
+    public void mapSourceLinesSkipsCommentsAndBlankLines() {
+        String code = "; c\n\nLOAD 5\nl: SUB 1\n\nJPOS l\nHALT";
+        assertArrayEquals(new int[] { 3, 4, 6, 7 }, Assembler.mapSourceLines(code));
+    }
+
+    @Test
+    public void mapSourceLinesFollowsTheHaltForATrailingLabel() {
+        String code = "; c\n\nLOAD 5\nl: SUB 1\n\nJPOS l\nend:";
+        assertEquals(4, Assembler.compile(code).length);
+        assertArrayEquals(new int[] { 3, 4, 6, 7 }, Assembler.mapSourceLines(code));
+    }
+
+    @Test
+    public void mapSourceLinesPutsTheHaltOnTheLastLine() {
+        String code = "LOAD 1\nend:\n; nothing else";
+        assertEquals(2, Assembler.compile(code).length);
+        assertArrayEquals(new int[] { 1, 3 }, Assembler.mapSourceLines(code));
+    }
+
+    @Test
+    public void mapSourceLinesIgnoresEmptyLabels() {
+        String code = "LOAD 1\n:";
+        assertEquals(1, Assembler.compile(code).length);
+        assertArrayEquals(new int[] { 1 }, Assembler.mapSourceLines(code));
+    }
+
+    @Test
+    public void mapSourceLinesMatchesCompile() {
+        String[] programs = {
+            "a: b: LOAD 1 ; both\nc:\n\nd: ADD 2\nJUMP a\ne: ; trailing",
+            "x:\ny:\n",
+            "LOAD 1",
+            "; only a comment",
+        };
+        for (String code : programs) {
+            assertEquals(code, Assembler.compile(code).length, Assembler.mapSourceLines(code).length);
+        }
+    }
+
+    @Test
+    public void decompileRoundTrips() {
+        String code = "LOAD 0x10\nloop: SUB 0b1\nJPOS loop\nSTORE R2\nend: HALT";
+        String decompiled = Assembler.decompile(Assembler.compile(code));
+        assertEquals("LOAD 16\nloop: SUB 1\nJPOS loop\nSTORE R2\nend: HALT", decompiled);
+        assertEquals(decompiled, Assembler.decompile(Assembler.compile(decompiled)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeLiterals() {
+        Assembler.compile("LOAD -1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownLabels() {
+        Assembler.compile("JUMP nowhere");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLiteralsTooLargeForIntWords() {
+        Assembler.compile("LOAD 4000000000");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsHexadecimalLiteralsTooLargeForIntWords() {
+        Assembler.compile("ADD 0x80000000", WordWidth.INT);
+    }
+
+    @Test
+    public void acceptsLargeLiteralsForWideWords() {
+        assertEquals(2147483647L, ((InstructionArgument.Literal) Assembler.compile("LOAD 2147483647")[0].getArguments().get(0)).getValue());
+        for (WordWidth wordWidth : new WordWidth[] { WordWidth.LONG, WordWidth.ARBITRARY }) {
+            Instruction[] program = Assembler.compile("LOAD 4000000000", wordWidth);
+            assertEquals(4000000000L, ((InstructionArgument.Literal) program[0].getArguments().get(0)).getValue());
+        }
+    }
+}
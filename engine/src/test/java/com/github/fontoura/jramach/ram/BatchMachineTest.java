@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class BatchMachineTest {
+    // sums R1 + (R1 - 1) + ... + 1 for the value in cell 0 and writes it to cell 1; a zero reads past the tape.
+    private static final String SUM =
+        "READ 0\n" +
+        "STORE R1\n" +
+        "JZERO zero\n" +
+        "loop: LOAD R2\n" +
+        "ADD R1\n" +
+        "STORE R2\n" +
+        "LOAD R1\n" +
+        "SUB 1\n" +
+        "STORE R1\n" +
+        "JPOS loop\n" +
+        "LOAD R2\n" +
+        "WRITE 1\n" +
+        "HALT\n" +
+        "zero: READ 4\n";
+
+    private static final long[] INPUTS = { 0, 1, 2, 3, 10, 100, 1000, 70000, 65536, 5 };
+
+    private static BatchMachine batch(WordWidth wordWidth) {
+        BatchMachine batch = new BatchMachine(DecodedProgram.decode(Assembler.compile(SUM)), INPUTS.length, 4, 2, wordWidth);
+        for (int lane = 0; lane < INPUTS.length; lane ++) {
+            batch.setTape(lane, 0, INPUTS[lane]);
+        }
+        return batch;
+    }
+
+    private static Machine single(int lane, WordWidth wordWidth) {
+        Machine machine = MachineAssert.machine(SUM, 4, 2, ExecutionEngine.INTERPRETED, wordWidth);
+        machine.setTape(0, INPUTS[lane]);
+        return machine;
+    }
+
+    private static void assertLanesMatch(WordWidth wordWidth, long[] budgets) {
+        BatchMachine batch = batch(wordWidth);
+        Machine[] machines = new Machine[INPUTS.length];
+        for (int lane = 0; lane < INPUTS.length; lane ++) {
+            machines[lane] = single(lane, wordWidth);
+        }
+        for (long budget : budgets) {
+            int running = batch.run(budget);
+            int expectedRunning = 0;
+            for (int lane = 0; lane < INPUTS.length; lane ++) {
+                RunResult result = machines[lane].run(budget);
+                assertEquals("lane " + lane + " status", result.getStatus(), batch.getStatus(lane));
+                MachineAssert.assertSameState(machines[lane], batch, lane);
+                if (!machines[lane].isHalted()) {
+                    expectedRunning ++;
+                }
+            }
+            assertEquals(expectedRunning, running);
+        }
+    }
+
+    @Test
+    public void lanesMatchSingleMachines() {
+        assertLanesMatch(WordWidth.INT, new long[] { Long.MAX_VALUE });
+        assertLanesMatch(WordWidth.LONG, new long[] { Long.MAX_VALUE });
+    }
+
+    @Test
+    public void lanesMatchSingleMachinesUnderBudgets() {
+        assertLanesMatch(WordWidth.INT, new long[] { 0, 1, 2, 3, 7, 50, 1000, 99999 });
+        assertLanesMatch(WordWidth.LONG, new long[] { 5, 13, 4096, 1 });
+    }
+
+    @Test
+    public void resetStartsEveryLaneOver() {
+        BatchMachine batch = batch(WordWidth.LONG);
+        batch.runUntilHalt();
+        batch.reset();
+        for (int lane = 0; lane < INPUTS.length; lane ++) {
+            assertEquals(0, batch.getStepCount(lane));
+            assertEquals(1, batch.getProgramCounter(lane));
+            assertEquals(RunResult.Status.BUDGET_EXHAUSTED, batch.getStatus(lane));
+        }
+        // the tapes are left alone, so every lane reads its input again.
+        batch.run(3);
+        assertEquals(INPUTS[4], batch.getRegister(4, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingRegistersAreRejected() {
+        new BatchMachine(Assembler.compile("LOAD 1\nSTORE R3"), 2, 4, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void arbitraryPrecisionIsRejected() {
+        new BatchMachine(DecodedProgram.decode(Assembler.compile(SUM)), 2, 4, 2, WordWidth.ARBITRARY);
+    }
+}
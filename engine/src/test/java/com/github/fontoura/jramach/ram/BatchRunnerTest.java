@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BatchRunnerTest {
+    // writes the product of cells 0 and 1 to cell 2.
+    private static final String MULTIPLY =
+        "READ 0\n" +
+        "STORE R1\n" +
+        "READ 1\n" +
+        "STORE R2\n" +
+        "JZERO done\n" +
+        "loop: LOAD R3\n" +
+        "ADD R1\n" +
+        "STORE R3\n" +
+        "LOAD R2\n" +
+        "SUB 1\n" +
+        "STORE R2\n" +
+        "JPOS loop\n" +
+        "done: LOAD R3\n" +
+        "WRITE 2\n";
+
+    private static List<long[]> tapes(int count) {
+        List<long[]> tapes = new ArrayList<long[]>();
+        for (int i = 0; i < count; i ++) {
+            tapes.add(new long[] { i, i % 7, 0 });
+        }
+        return tapes;
+    }
+
+    private static Machine reference(long[] inputTape, int tapeLength, long maxSteps) {
+        Machine machine = new Machine(tapeLength, 4, false);
+        machine.setProgram(Assembler.compile(MULTIPLY));
+        for (int i = 0; i < inputTape.length; i ++) {
+            machine.setTape(i, inputTape[i]);
+        }
+        machine.run(maxSteps);
+        return machine;
+    }
+
+    private static void assertSameResults(List<long[]> inputTapes, int tapeLength, Limits limits) {
+        List<JobResult> results = BatchRunner.runAll(Assembler.compile(MULTIPLY), inputTapes, limits);
+        assertEquals(inputTapes.size(), results.size());
+        for (int i = 0; i < inputTapes.size(); i ++) {
+            Machine expected = reference(inputTapes.get(i), tapeLength > 0 ? tapeLength : inputTapes.get(i).length, limits.getMaxSteps());
+            JobResult actual = results.get(i);
+            assertEquals("steps of job " + i, expected.getStepCount(), actual.getStepCount());
+            assertEquals("program counter of job " + i, expected.getProgramCounter(), actual.getProgramCounter());
+            for (int j = 0; j < actual.getTapeLength(); j ++) {
+                assertEquals("tape " + j + " of job " + i, expected.getTape(j), actual.getTape(j));
+            }
+        }
+    }
+
+    @Test
+    public void resultsMatchSingleRunsOnTheCommonPool() {
+        Limits limits = new Limits.Builder().registerCount(4).maxSteps(1000).build();
+        assertSameResults(tapes(100), 0, limits);
+    }
+
+    @Test
+    public void resultsMatchSingleRunsOnAPoolOfItsOwn() {
+        Limits limits = new Limits.Builder().registerCount(4).maxSteps(1000).parallelism(2).build();
+        assertSameResults(tapes(100), 0, limits);
+    }
+
+    @Test
+    public void budgetCutsEveryJobAlike() {
+        Limits limits = new Limits.Builder().registerCount(4).maxSteps(20).parallelism(3).build();
+        List<long[]> inputTapes = tapes(50);
+        assertSameResults(inputTapes, 0, limits);
+        List<JobResult> results = BatchRunner.runAll(Assembler.compile(MULTIPLY), inputTapes, limits);
+        assertEquals(RunResult.Status.HALTED, results.get(0).getStatus());
+        assertEquals(RunResult.Status.BUDGET_EXHAUSTED, results.get(6).getStatus());
+    }
+
+    @Test
+    public void tapesOfDifferentLengthsGetMachinesThatFit() {
+        List<long[]> inputTapes = new ArrayList<long[]>();
+        for (int i = 0; i < 40; i ++) {
+            long[] tape = new long[3 + i % 5];
+            tape[0] = i;
+            tape[1] = 3;
+            inputTapes.add(tape);
+        }
+        Limits limits = new Limits.Builder().registerCount(4).maxSteps(1000).parallelism(2).build();
+        assertSameResults(inputTapes, 0, limits);
+    }
+
+    @Test
+    public void shortInputsArePaddedToTheTapeLength() {
+        List<long[]> inputTapes = new ArrayList<long[]>();
+        inputTapes.add(new long[] { 6, 7 });
+        Limits limits = new Limits.Builder().tapeLength(5).registerCount(4).maxSteps(1000).build();
+        List<JobResult> results = BatchRunner.runAll(Assembler.compile(MULTIPLY), inputTapes, limits);
+        assertArrayEquals(new long[] { 6, 7, 42, 0, 0 }, results.get(0).getTape());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void programsUsingMissingRegistersAreRejected() {
+        List<long[]> inputTapes = new ArrayList<long[]>();
+        inputTapes.add(new long[] { 1 });
+        BatchRunner.runAll(Assembler.compile("READ 0\nSTORE R5"), inputTapes, new Limits.Builder().registerCount(4).build());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void inputsLongerThanTheTapeAreRejected() {
+        List<long[]> inputTapes = new ArrayList<long[]>();
+        inputTapes.add(new long[] { 1, 2, 3, 4 });
+        BatchRunner.runAll(Assembler.compile(MULTIPLY), inputTapes, new Limits.Builder().tapeLength(3).registerCount(4).build());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static com.github.fontoura.jramach.ram.MachineAssert.machine;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FaultTest {
+    private static final String READ_PAST_THE_TAPE =
+        "LOAD 1\n" +
+        "STORE R1\n" +
+        "READ 9\n" +
+        "STORE R2\n";
+
+    private static final String WRITE_PAST_THE_TAPE =
+        "LOAD 6\n" +
+        "WRITE 1\n" +
+        "WRITE R1\n";
+
+    @Test
+    public void tapeFaultsAreRecordedWithoutThrowing() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Machine machine = machine(READ_PAST_THE_TAPE, 4, 2, engine);
+            RunResult result = machine.run(100);
+            assertEquals(engine.toString(), RunResult.Status.FAULTED, result.getStatus());
+            assertEquals(engine.toString(), FaultCode.TAPE_READ_OUT_OF_BOUNDS, machine.getFaultCode());
+            assertEquals(engine.toString(), 3, machine.getFaultProgramCounter());
+            assertEquals(engine.toString(), 9, machine.getFaultAddress());
+            assertEquals(engine.toString(), 1, machine.getRegister(1));
+            assertEquals(engine.toString(), 0, machine.getRegister(2));
+            assertEquals(engine.toString(), "Failed to execute READ at line #3: " + FaultCode.TAPE_READ_OUT_OF_BOUNDS.getDescription() + " (address 9)", machine.describeFault());
+
+            machine = machine(WRITE_PAST_THE_TAPE, 4, 2, engine);
+            machine.setRegister(1, 4);
+            assertEquals(engine.toString(), RunResult.Status.FAULTED, machine.run(100).getStatus());
+            assertEquals(engine.toString(), FaultCode.TAPE_WRITE_OUT_OF_BOUNDS, machine.getFaultCode());
+            assertEquals(engine.toString(), 3, machine.getFaultProgramCounter());
+            assertEquals(engine.toString(), 4, machine.getFaultAddress());
+            assertEquals(engine.toString(), 6, machine.getTape(1));
+        }
+    }
+
+    @Test
+    public void faultsAreQuietUnlessAListenerIsSet() {
+        PrintStream err = System.err;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(printed));
+        try {
+            for (ExecutionEngine engine : ExecutionEngine.values()) {
+                Machine machine = machine(READ_PAST_THE_TAPE, 4, 2, engine);
+                assertNull(machine.getFaultListener());
+                machine.run(100);
+                assertTrue(machine.isFaulted());
+            }
+        } finally {
+            System.setErr(err);
+        }
+        assertEquals("", printed.toString());
+    }
+
+    @Test
+    public void listenersHearEachFaultOnce() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            final List<FaultCode> heard = new ArrayList<FaultCode>();
+            Machine machine = machine(READ_PAST_THE_TAPE, 4, 2, engine);
+            machine.setFaultListener(new FaultListener() {
+                @Override
+                public void machineFaulted(Machine machine) {
+                    heard.add(machine.getFaultCode());
+                }
+            });
+            machine.run(100);
+            machine.run(100);
+            assertEquals(engine.toString(), 1, heard.size());
+            assertEquals(engine.toString(), FaultCode.TAPE_READ_OUT_OF_BOUNDS, heard.get(0));
+        }
+    }
+}
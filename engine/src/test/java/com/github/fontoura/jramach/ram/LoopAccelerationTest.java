@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static com.github.fontoura.jramach.ram.MachineAssert.assertSameState;
+import static com.github.fontoura.jramach.ram.MachineAssert.machine;
+import static com.github.fontoura.jramach.ram.MachineAssert.step;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LoopAccelerationTest {
+    private static final String COUNTING =
+        "LOAD R1\n" +
+        "loop: SUB 1\n" +
+        "JPOS loop\n" +
+        "STORE R2\n";
+
+    // R3 = R1 * R2, counting R2 down in R4.
+    private static final String MULTIPLY =
+        "LOAD R2\n" +
+        "STORE R4\n" +
+        "loop: LOAD R3\n" +
+        "ADD R1\n" +
+        "STORE R3\n" +
+        "LOAD R4\n" +
+        "SUB 1\n" +
+        "STORE R4\n" +
+        "JPOS loop\n";
+
+    // counts R1 up while it stays at or below R2, which the clamp at zero turns into a JZERO test.
+    private static final String COUNTING_UP =
+        "loop: LOAD R1\n" +
+        "ADD 1\n" +
+        "STORE R1\n" +
+        "SUB R2\n" +
+        "JZERO loop\n";
+
+    // steps the counter by three, so the last subtraction is clamped at zero.
+    private static final String CLAMPED =
+        "LOAD R1\n" +
+        "loop: SUB 3\n" +
+        "STORE R2\n" +
+        "LOAD R3\n" +
+        "ADD 1\n" +
+        "STORE R3\n" +
+        "LOAD R2\n" +
+        "JPOS loop\n";
+
+    private static Machine accelerated(String code) {
+        Machine machine = machine(code, 4, 8, ExecutionEngine.DECODED);
+        machine.setLoopAcceleration(true);
+        return machine;
+    }
+
+    private static Machine plain(String code) {
+        return machine(code, 4, 8, ExecutionEngine.INTERPRETED);
+    }
+
+    private static void assertEquivalent(String code, long[] registers) {
+        Machine expected = plain(code);
+        Machine actual = accelerated(code);
+        for (int i = 0; i < registers.length; i ++) {
+            expected.setRegister(i + 1, registers[i]);
+            actual.setRegister(i + 1, registers[i]);
+        }
+        step(expected, Long.MAX_VALUE);
+        RunResult result = actual.run(Long.MAX_VALUE);
+        assertTrue(result.isHalted());
+        assertEquals(expected.getStepCount(), result.getSteps());
+        assertSameState(expected, actual);
+    }
+
+    @Test
+    public void countingLoop() {
+        assertEquivalent(COUNTING, new long[] { 1 });
+        assertEquivalent(COUNTING, new long[] { 2 });
+        assertEquivalent(COUNTING, new long[] { 100000 });
+    }
+
+    @Test
+    public void countingLoopThatNeverRuns() {
+        assertEquivalent(COUNTING, new long[] { 0 });
+    }
+
+    @Test
+    public void multiplyLoop() {
+        assertEquivalent(MULTIPLY, new long[] { 7, 1 });
+        assertEquivalent(MULTIPLY, new long[] { 7, 6 });
+        assertEquivalent(MULTIPLY, new long[] { 123, 4567 });
+        assertEquivalent(MULTIPLY, new long[] { 0, 50000 });
+    }
+
+    @Test
+    public void multiplyLoopWrapsAround() {
+        assertEquivalent(MULTIPLY, new long[] { 1000000000, 10 });
+        assertEquivalent(MULTIPLY, new long[] { Integer.MAX_VALUE, 3 });
+        assertEquivalent(MULTIPLY, new long[] { 65537, 65537 });
+    }
+
+    @Test
+    public void countingUpToALimit() {
+        assertEquivalent(COUNTING_UP, new long[] { 0, 20000 });
+        assertEquivalent(COUNTING_UP, new long[] { 5, 5 });
+    }
+
+    @Test
+    public void countingUpAcrossTheWraparound() {
+        // R1 wraps to a negative number, which SUB clamps to zero, so the loop keeps going past the overflow.
+        assertEquivalent(COUNTING_UP, new long[] { Integer.MAX_VALUE - 10, Integer.MAX_VALUE - 2 });
+    }
+
+    @Test
+    public void clampAtZero() {
+        assertEquivalent(CLAMPED, new long[] { 10, 0, 0 });
+        assertEquivalent(CLAMPED, new long[] { 9, 0, 0 });
+        assertEquivalent(CLAMPED, new long[] { 1, 0, 0 });
+        assertEquivalent(CLAMPED, new long[] { 30001, 0, 0 });
+    }
+
+    @Test
+    public void budgetsCuttingThroughALoop() {
+        String[] programs = { COUNTING, MULTIPLY, CLAMPED };
+        long[][] registers = { { 1000 }, { 3, 1000 }, { 1000, 0, 0 } };
+        for (int p = 0; p < programs.length; p ++) {
+            for (long budget = 0; budget < 40; budget ++) {
+                assertBudgetEquivalent(programs[p], registers[p], new long[] { budget });
+            }
+            assertBudgetEquivalent(programs[p], registers[p], new long[] { 777, 1, 2, 1234, 3 });
+        }
+    }
+
+    @Test
+    public void budgetsSpanningSeveralSlices() {
+        assertBudgetEquivalent(COUNTING, new long[] { 1000000 }, new long[] { 200001, 65536, 131073, 3 });
+        assertBudgetEquivalent(MULTIPLY, new long[] { 3, 200000 }, new long[] { 300007, 65535, 1 });
+    }
+
+    @Test
+    public void loggedRunsStopAtTheBudget() {
+        Machine expected = plain(COUNTING);
+        Machine actual = accelerated(COUNTING);
+        actual.setUndoLogCapacity(16);
+        expected.setRegister(1, 1000000);
+        actual.setRegister(1, 1000000);
+        step(expected, 150001);
+        assertEquals(150001, actual.run(150001).getSteps());
+        assertSameState(expected, actual);
+    }
+
+    private static void assertBudgetEquivalent(String code, long[] registers, long[] budgets) {
+        Machine expected = plain(code);
+        Machine actual = accelerated(code);
+        for (int i = 0; i < registers.length; i ++) {
+            expected.setRegister(i + 1, registers[i]);
+            actual.setRegister(i + 1, registers[i]);
+        }
+        for (long budget : budgets) {
+            step(expected, budget);
+            actual.run(budget);
+            assertSameState(expected, actual);
+        }
+    }
+
+    @Test
+    public void hugeCountingLoop() {
+        Machine machine = accelerated(COUNTING);
+        machine.setRegister(1, 2000000000);
+        RunResult result = machine.run(Long.MAX_VALUE);
+        assertTrue(result.isHalted());
+        assertEquals(4000000002L, result.getSteps());
+        assertEquals(0, machine.getRegister(2));
+    }
+
+    @Test
+    public void hugeCountingLoopCutByTheBudget() {
+        Machine machine = accelerated(COUNTING);
+        machine.setRegister(1, 2000000000);
+        RunResult result = machine.run(3000000001L);
+        assertEquals(RunResult.Status.BUDGET_EXHAUSTED, result.getStatus());
+        assertEquals(3000000001L, result.getSteps());
+        assertEquals(3000000001L, machine.getStepCount());
+        assertEquals(500000000, machine.getAccumulator());
+        assertEquals(2, machine.getProgramCounter());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static org.junit.Assert.assertEquals;
+
+public final class MachineAssert {
+    private MachineAssert() {}
+
+    public static Machine machine(String code, int tapeLength, int registerCount, ExecutionEngine engine) {
+        Machine machine = new Machine(tapeLength, registerCount, false);
+        machine.setExecutionEngine(engine);
+        machine.setProgram(Assembler.compile(code));
+        return machine;
+    }
+
+    public static Machine machine(String code, int tapeLength, int registerCount, ExecutionEngine engine, WordWidth wordWidth) {
+        Machine machine = new Machine(tapeLength, registerCount, false, wordWidth);
+        machine.setExecutionEngine(engine);
+        machine.setProgram(Assembler.compile(code, wordWidth));
+        return machine;
+    }
+
+    // runs one instruction at a time, the way the machine was originally driven.
+    public static void step(Machine machine, long steps) {
+        for (long i = 0; i < steps && !machine.isHalted(); i ++) {
+            machine.nextInstruction();
+        }
+    }
+
+    public static void assertSameState(Machine expected, Machine actual) {
+        assertEquals("step count", expected.getStepCount(), actual.getStepCount());
+        assertEquals("program counter", expected.getProgramCounter(), actual.getProgramCounter());
+        assertEquals("halted", expected.isHalted(), actual.isHalted());
+        assertEquals("faulted", expected.isFaulted(), actual.isFaulted());
+        assertEquals("fault code", expected.getFaultCode(), actual.getFaultCode());
+        for (int i = 0; i < expected.getRegisterCount(); i ++) {
+            assertEquals("register " + i, expected.getBigRegister(i), actual.getBigRegister(i));
+        }
+        for (int i = 0; i < expected.getTapeLength(); i ++) {
+            assertEquals("tape " + i, expected.getBigTape(i), actual.getBigTape(i));
+        }
+    }
+
+    public static void assertSameState(Machine expected, BatchMachine actual, int lane) {
+        String name = "lane " + lane + " ";
+        assertEquals(name + "step count", expected.getStepCount(), actual.getStepCount(lane));
+        assertEquals(name + "program counter", expected.getProgramCounter(), actual.getProgramCounter(lane));
+        assertEquals(name + "halted", expected.isHalted(), actual.isHalted(lane));
+        assertEquals(name + "faulted", expected.isFaulted(), actual.isFaulted(lane));
+        assertEquals(name + "fault code", expected.getFaultCode(), actual.getFaultCode(lane));
+        assertEquals(name + "register 0", expected.getAccumulator(), actual.getAccumulator(lane));
+        for (int i = 1; i < expected.getRegisterCount(); i ++) {
+            assertEquals(name + "register " + i, expected.getRegister(i), actual.getRegister(lane, i));
+        }
+        for (int i = 0; i < expected.getTapeLength(); i ++) {
+            assertEquals(name + "tape " + i, expected.getTape(i), actual.getTape(lane, i));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static com.github.fontoura.jramach.ram.MachineAssert.machine;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MachineListenerTest {
+    private static final String PROGRAM =
+        "LOAD 7\n" +
+        "STORE R1\n" +
+        "WRITE 2\n" +
+        "READ 2\n" +
+        "ADD R1\n" +
+        "JPOS skip\n" +
+        "NOP\n" +
+        "skip: JZERO skip\n";
+
+    private static final String COUNTING =
+        "LOAD R1\n" +
+        "loop: SUB 1\n" +
+        "JPOS loop\n" +
+        "STORE R2\n";
+
+    private static final class Recorder implements MachineListener {
+        private final List<MachineEvent> events = new ArrayList<MachineEvent>();
+
+        @Override
+        public void machineChanged(MachineEvent event) {
+            events.add(event);
+        }
+
+        List<String> descriptions() {
+            List<String> descriptions = new ArrayList<String>();
+            for (MachineEvent event : events) {
+                descriptions.add(event.toString());
+            }
+            return descriptions;
+        }
+    }
+
+    @Test
+    public void everyChangeIsPublished() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Machine machine = machine(PROGRAM, 4, 2, engine);
+            Recorder recorder = new Recorder();
+            machine.addMachineListener(recorder);
+            assertEquals(RunResult.Status.HALTED, machine.run(100).getStatus());
+            assertEquals(engine.toString(), Arrays.asList(
+                    "wrote accumulator 0 -> 7", "pc 1 -> 2",
+                    "read accumulator = 7", "wrote R1 0 -> 7", "pc 2 -> 3",
+                    "read accumulator = 7", "wrote tape[2] 0 -> 7", "pc 3 -> 4",
+                    "read tape[2] = 7", "wrote accumulator 7 -> 7", "pc 4 -> 5",
+                    "read accumulator = 7", "read R1 = 7", "wrote accumulator 7 -> 14", "pc 5 -> 6",
+                    "read accumulator = 14", "pc 6 -> 8",
+                    "read accumulator = 14", "pc 8 -> 1"), recorder.descriptions());
+
+            MachineEvent store = recorder.events.get(3);
+            assertEquals(MachineEvent.REGISTER_WRITTEN, store.getKind());
+            assertEquals(1, store.getIndex());
+            assertEquals(0, store.getOldValue());
+            assertEquals(7, store.getNewValue());
+            assertTrue(store.getMachine() == machine);
+            MachineEvent jump = recorder.events.get(16);
+            assertEquals(MachineEvent.PROGRAM_COUNTER_MOVED, jump.getKind());
+            assertEquals(-1, jump.getIndex());
+            assertEquals(6, jump.getOldValue());
+            assertEquals(8, jump.getNewValue());
+        }
+    }
+
+    @Test
+    public void listenersOnlyGetTheKindsTheyAskedFor() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Machine machine = machine(PROGRAM, 4, 2, engine);
+            Recorder tape = new Recorder();
+            Recorder registers = new Recorder();
+            Recorder jumps = new Recorder();
+            machine.addMachineListener(tape, MachineEvent.TAPE_READ | MachineEvent.TAPE_WRITTEN);
+            machine.addMachineListener(registers, MachineEvent.REGISTER_READ | MachineEvent.REGISTER_WRITTEN);
+            machine.addMachineListener(jumps, MachineEvent.PROGRAM_COUNTER_MOVED);
+            machine.run(100);
+            assertEquals(engine.toString(), Arrays.asList("wrote tape[2] 0 -> 7", "read tape[2] = 7"), tape.descriptions());
+            assertEquals(engine.toString(), Arrays.asList("wrote R1 0 -> 7", "read R1 = 7"), registers.descriptions());
+            assertEquals(engine.toString(), 7, jumps.events.size());
+        }
+    }
+
+    @Test
+    public void removedListenersHearNothingMore() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Machine machine = machine(PROGRAM, 4, 2, engine);
+            Recorder kept = new Recorder();
+            Recorder removed = new Recorder();
+            machine.addMachineListener(kept, MachineEvent.WRITES);
+            machine.addMachineListener(removed);
+            machine.run(2);
+            int heard = removed.events.size();
+            machine.removeMachineListener(removed);
+            machine.run(100);
+            assertEquals(engine.toString(), heard, removed.events.size());
+            assertEquals(engine.toString(), 5, kept.events.size());
+        }
+    }
+
+    // two billion trips would take far too long one step at a time, so the run only finishes in time on the block engine.
+    @Test(timeout = 20000)
+    public void removingTheLastListenerRestoresFullSpeed() {
+        Machine machine = machine(COUNTING, 4, 2, ExecutionEngine.DECODED);
+        machine.setLoopAcceleration(true);
+        machine.setRegister(1, 2000000000);
+        Recorder recorder = new Recorder();
+        machine.addMachineListener(recorder, MachineEvent.TAPE_WRITTEN);
+        machine.run(1000);
+        machine.removeMachineListener(recorder);
+        assertEquals(RunResult.Status.HALTED, machine.runUntilHalt().getStatus());
+        assertEquals(0, machine.getRegister(2));
+        assertEquals(2 + 2L * 2000000000, machine.getStepCount());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MachineMetricsTest {
+    // writes one cell on every page of the tape, over and over.
+    private static final String SPREAD =
+        "loop: LOAD R1\n" +
+        "ADD 1024\n" +
+        "STORE R1\n" +
+        "SUB 1047552\n" +
+        "JPOS wrap\n" +
+        "LOAD R1\n" +
+        "WRITE R1\n" +
+        "JUMP loop\n" +
+        "wrap: LOAD 0\n" +
+        "STORE R1\n" +
+        "JUMP loop\n";
+
+    private static MBeanServer server;
+    private static ObjectName name;
+
+    @BeforeClass
+    public static void register() throws JMException {
+        MachineMetrics.register();
+        MachineMetrics.register();
+        server = ManagementFactory.getPlatformMBeanServer();
+        name = new ObjectName(MachineMetrics.OBJECT_NAME);
+    }
+
+    private static long attribute(String attribute) throws JMException {
+        return (Long) server.getAttribute(name, attribute);
+    }
+
+    @Test
+    public void runsShowUpInTheMBeanServer() throws JMException {
+        long instructions = attribute("TotalInstructions");
+        long halts = attribute("Halts");
+        long faults = attribute("Faults");
+        long exhaustions = attribute("BudgetExhaustions");
+
+        Machine machine = MachineAssert.machine("LOAD 3\nloop: SUB 1\nJPOS loop\n", 4, 2, ExecutionEngine.DECODED);
+        assertEquals(RunResult.Status.HALTED, machine.run(100).getStatus());
+        machine = MachineAssert.machine("READ 9\n", 4, 2, ExecutionEngine.DECODED);
+        assertEquals(RunResult.Status.FAULTED, machine.run(100).getStatus());
+        machine = MachineAssert.machine("loop: JUMP loop\n", 4, 2, ExecutionEngine.DECODED);
+        assertEquals(RunResult.Status.BUDGET_EXHAUSTED, machine.run(50).getStatus());
+
+        assertEquals(instructions + 7 + 1 + 50, attribute("TotalInstructions"));
+        assertEquals(halts + 1, attribute("Halts"));
+        assertEquals(faults + 1, attribute("Faults"));
+        assertEquals(exhaustions + 1, attribute("BudgetExhaustions"));
+        assertEquals(0, attribute("ActiveMachines"));
+    }
+
+    @Test(timeout = 20000)
+    public void tapeCellsAreUpdatedDuringRuns() throws Exception {
+        long before = attribute("TapeCellsInUse");
+        final Machine machine = new Machine(1 << 20, 2, false, WordWidth.INT, TapeStorage.PAGED);
+        machine.setProgram(Assembler.compile(SPREAD));
+        Thread runner = new Thread() {
+            @Override
+            public void run() {
+                machine.run(Long.MAX_VALUE);
+            }
+        };
+        runner.start();
+        try {
+            // the run starts with no pages at all, so only samples taken while it runs can see them.
+            while (attribute("TapeCellsInUse") < before + PagedTape.PAGE_SIZE * 100L) {
+                Thread.sleep(1);
+            }
+            assertEquals(1, attribute("ActiveMachines"));
+        } finally {
+            machine.cancel();
+            runner.join();
+        }
+        assertEquals(before, attribute("TapeCellsInUse"));
+        assertEquals(0, attribute("ActiveMachines"));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MachineRunTest {
+    // never halts, and ends in a plain jump so no engine can skip through it.
+    private static final String FOREVER =
+        "loop: LOAD R1\n" +
+        "ADD 1\n" +
+        "STORE R1\n" +
+        "WRITE 0\n" +
+        "JUMP loop\n";
+
+    @Test
+    public void cancelFromAnotherThreadStopsTheRun() throws InterruptedException {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            final Machine machine = MachineAssert.machine(FOREVER, 2, 2, engine);
+            final RunResult[] result = new RunResult[1];
+            Thread runner = new Thread() {
+                @Override
+                public void run() {
+                    result[0] = machine.run(Long.MAX_VALUE);
+                }
+            };
+            runner.start();
+            Thread.sleep(20);
+            machine.cancel();
+            runner.join(10000);
+            assertEquals(engine.toString(), RunResult.Status.CANCELLED, result[0].getStatus());
+            assertEquals(engine.toString(), machine.getStepCount(), result[0].getSteps());
+
+            // the request is used up by the run it stopped.
+            RunResult next = machine.run(10);
+            assertEquals(engine.toString(), RunResult.Status.BUDGET_EXHAUSTED, next.getStatus());
+            assertEquals(engine.toString(), 10, next.getSteps());
+        }
+    }
+
+    @Test
+    public void pastDeadlinesReturnWithoutRunning() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Machine machine = MachineAssert.machine(FOREVER, 2, 2, engine);
+            machine.run(100);
+            RunResult result = machine.run(Long.MAX_VALUE, System.nanoTime() - 1);
+            assertEquals(engine.toString(), RunResult.Status.DEADLINE_EXCEEDED, result.getStatus());
+            assertEquals(engine.toString(), 0, result.getSteps());
+            assertEquals(engine.toString(), 100, machine.getStepCount());
+        }
+    }
+
+    @Test
+    public void deadlinesStopLongRunsPromptly() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Machine machine = MachineAssert.machine(FOREVER, 2, 2, engine);
+            machine.run(7);
+            long start = System.nanoTime();
+            RunResult result = machine.run(Long.MAX_VALUE, start + 20000000L);
+            long elapsed = System.nanoTime() - start;
+            assertEquals(engine.toString(), RunResult.Status.DEADLINE_EXCEEDED, result.getStatus());
+            assertTrue(engine + " took " + elapsed + " ns", elapsed < 5000000000L);
+            assertEquals(engine.toString(), 7 + result.getSteps(), machine.getStepCount());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static com.github.fontoura.jramach.ram.MachineAssert.assertSameState;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+public class MachineSnapshotTest {
+    // writes a counter to every 1031st cell, so the writes land on a new page every few steps.
+    private static final String SPREAD =
+        "loop: LOAD R1\n" +
+        "ADD 1\n" +
+        "STORE R1\n" +
+        "WRITE R2\n" +
+        "LOAD R2\n" +
+        "ADD 1031\n" +
+        "STORE R2\n" +
+        "SUB 40000\n" +
+        "JZERO loop\n";
+
+    // doubles R1 and cell 2 on every trip, so both outgrow a long.
+    private static final String DOUBLING =
+        "loop: LOAD R1\n" +
+        "ADD R1\n" +
+        "STORE R1\n" +
+        "READ 2\n" +
+        "ADD R1\n" +
+        "WRITE 2\n" +
+        "LOAD R2\n" +
+        "SUB 1\n" +
+        "STORE R2\n" +
+        "JPOS loop\n";
+
+    private static Machine machine(String code, ExecutionEngine engine, WordWidth wordWidth, TapeStorage tapeStorage) {
+        Machine machine = new Machine(50000, 2, false, wordWidth, tapeStorage);
+        machine.setExecutionEngine(engine);
+        machine.setProgram(Assembler.compile(code, wordWidth));
+        return machine;
+    }
+
+    @Test
+    public void pagedTapesRestoreAcrossCopiedPages() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Machine straight = machine(SPREAD, engine, WordWidth.LONG, TapeStorage.PAGED);
+            straight.run(Long.MAX_VALUE);
+
+            Machine machine = machine(SPREAD, engine, WordWidth.LONG, TapeStorage.PAGED);
+            machine.run(100);
+            Machine halfway = machine(SPREAD, engine, WordWidth.LONG, TapeStorage.PAGED);
+            halfway.run(100);
+            MachineSnapshot snapshot = machine.checkpoint();
+            machine.run(Long.MAX_VALUE);
+            assertSameState(straight, machine);
+
+            // the run after the checkpoint copied the pages it wrote, so the snapshot still holds the old cells.
+            machine.restore(snapshot);
+            assertSameState(halfway, machine);
+            machine.run(Long.MAX_VALUE);
+            assertSameState(straight, machine);
+
+            machine.restore(snapshot);
+            assertSameState(halfway, machine);
+        }
+    }
+
+    @Test
+    public void arbitraryValuesAreRestored() {
+        BigInteger big = BigInteger.ONE.shiftLeft(70);
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            for (TapeStorage tapeStorage : TapeStorage.values()) {
+                Machine machine = machine(DOUBLING, engine, WordWidth.ARBITRARY, tapeStorage);
+                machine.setBigRegister(1, big);
+                machine.setRegister(2, 3);
+                machine.setBigTape(2, big.add(BigInteger.ONE));
+                MachineSnapshot snapshot = machine.checkpoint();
+                machine.run(Long.MAX_VALUE);
+                assertEquals(big.shiftLeft(3), machine.getBigRegister(1));
+                assertTrue(machine.getBigTape(2).bitLength() > 64);
+
+                machine.restore(snapshot);
+                assertEquals(big, machine.getBigRegister(1));
+                assertEquals(3, machine.getRegister(2));
+                assertEquals(big.add(BigInteger.ONE), machine.getBigTape(2));
+                assertEquals(0, machine.getStepCount());
+                assertEquals(1, machine.getProgramCounter());
+            }
+        }
+    }
+
+    @Test
+    public void valuesThatOutgrewALongAfterTheCheckpointAreDropped() {
+        Machine machine = machine(DOUBLING, ExecutionEngine.DECODED, WordWidth.ARBITRARY, TapeStorage.DENSE);
+        machine.setRegister(1, Long.MAX_VALUE / 2);
+        machine.setRegister(2, 4);
+        MachineSnapshot snapshot = machine.checkpoint();
+        machine.run(Long.MAX_VALUE);
+        machine.restore(snapshot);
+        assertEquals(BigInteger.valueOf(Long.MAX_VALUE / 2), machine.getBigRegister(1));
+        assertEquals(BigInteger.ZERO, machine.getBigTape(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSnapshotsOfOtherTapeStorages() {
+        MachineSnapshot snapshot = new Machine(64, 2, false, WordWidth.LONG, TapeStorage.PAGED).checkpoint();
+        new Machine(64, 2, false, WordWidth.LONG, TapeStorage.DENSE).restore(snapshot);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSnapshotsOfOtherTapeLengths() {
+        MachineSnapshot snapshot = new Machine(64, 2, false, WordWidth.LONG, TapeStorage.PAGED).checkpoint();
+        new Machine(65, 2, false, WordWidth.LONG, TapeStorage.PAGED).restore(snapshot);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSnapshotsWithOtherRegisters() {
+        MachineSnapshot snapshot = new Machine(64, 2, false, WordWidth.LONG).checkpoint();
+        new Machine(64, 3, false, WordWidth.LONG).restore(snapshot);
+    }
+}
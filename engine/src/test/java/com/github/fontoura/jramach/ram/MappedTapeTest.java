@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedTapeTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file(int bytes) throws IOException {
+        File file = folder.newFile();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(bytes);
+        } finally {
+            randomAccessFile.close();
+        }
+        return file;
+    }
+
+    private static Machine run(Tape tape, WordWidth wordWidth, String code) {
+        Machine machine = new Machine(tape, 2, false, wordWidth);
+        machine.setProgram(Assembler.compile(code, wordWidth));
+        machine.run(Long.MAX_VALUE);
+        return machine;
+    }
+
+    @Test
+    public void persistentWritesReachTheFile() throws IOException {
+        File file = file(32);
+        MappedTape tape = new MappedTape(file, WordWidth.LONG, true);
+        assertEquals(4, tape.getLength());
+        run(tape, WordWidth.LONG, "LOAD 0x7fffffffffffffff\nWRITE 3\nLOAD 7\nWRITE 0");
+        tape.flush();
+
+        MappedTape reopened = new MappedTape(file, WordWidth.LONG, false);
+        assertEquals(Long.MAX_VALUE, reopened.get(3));
+        assertEquals(7, reopened.get(0));
+    }
+
+    @Test
+    public void privateWritesStayInMemory() throws IOException {
+        File file = file(16);
+        MappedTape tape = new MappedTape(file, WordWidth.INT, false);
+        Machine machine = run(tape, WordWidth.INT, "LOAD 5\nWRITE 1\nREAD 1\nADD 1\nWRITE 2");
+        assertEquals(6, machine.getTape(2));
+        assertEquals(0, new MappedTape(file, WordWidth.INT, false).get(2));
+    }
+
+    @Test
+    public void intCellsWorkOnLongFiles() throws IOException {
+        MappedTape tape = new MappedTape(file(16), WordWidth.LONG, false);
+        Machine machine = run(tape, WordWidth.INT, "LOAD 0x7fffffff\nADD 1\nWRITE 0\nREAD 0\nSTORE R1");
+        assertEquals(Integer.MIN_VALUE, machine.getRegister(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsArbitraryMachinesOnLongCells() throws IOException {
+        new Machine(new MappedTape(file(16), WordWidth.LONG, false), 2, false, WordWidth.ARBITRARY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsArbitraryMachinesOnIntCells() throws IOException {
+        new Machine(new MappedTape(file(16), WordWidth.INT, false), 2, false, WordWidth.ARBITRARY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLongMachinesOnIntCells() throws IOException {
+        new Machine(new MappedTape(file(16), WordWidth.INT, false), 2, false, WordWidth.LONG);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsArbitraryCells() throws IOException {
+        new MappedTape(file(16), WordWidth.ARBITRARY, false);
+    }
+
+    @Test
+    public void rejectsMissingFiles() throws IOException {
+        File file = new File(folder.getRoot(), "missing.tape");
+        try {
+            new MappedTape(file, WordWidth.INT, true);
+            throw new AssertionError("The missing file was accepted!");
+        } catch (FileNotFoundException e) {
+            assertFalse(file.exists());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotBeCheckpointed() throws IOException {
+        Machine machine = new Machine(new MappedTape(file(16), WordWidth.INT, false), 2, false, WordWidth.INT);
+        machine.checkpoint();
+    }
+
+    @Test
+    public void stepsBackWithoutCheckpoints() throws IOException {
+        Machine machine = new Machine(new MappedTape(file(16), WordWidth.INT, false), 2, false, WordWidth.INT);
+        machine.setUndoLogCapacity(16);
+        machine.setProgram(Assembler.compile("LOAD 5\nWRITE 1\nLOAD 6\nWRITE 1\n"));
+        machine.run(Long.MAX_VALUE);
+        assertEquals(6, machine.getTape(1));
+        assertTrue(machine.stepBack());
+        assertTrue(machine.stepBack());
+        assertEquals(5, machine.getTape(1));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static com.github.fontoura.jramach.ram.MachineAssert.assertSameState;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PagedTapeTest {
+    // spans more than one directory, and ends partway through a page.
+    private static final int LENGTH = 3 * PagedTape.PAGE_SIZE * PagedTape.DIRECTORY_SIZE + 5;
+
+    @Test
+    public void untouchedCellsReadZeroWithoutPages() {
+        PagedTape tape = new PagedTape(LENGTH);
+        assertEquals(0, tape.get(0));
+        assertEquals(0, tape.get(LENGTH - 1));
+        tape.set(12345, 0);
+        assertEquals(0, tape.getAllocatedPageCount());
+    }
+
+    @Test
+    public void cellsKeepTheirValuesAcrossPagesAndDirectories() {
+        PagedTape tape = new PagedTape(LENGTH);
+        Map<Integer, Long> expected = new HashMap<Integer, Long>();
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i ++) {
+            int address = random.nextInt(LENGTH);
+            long value = random.nextLong();
+            tape.set(address, value);
+            expected.put(address, value);
+        }
+        int[] edges = { 0, PagedTape.PAGE_SIZE - 1, PagedTape.PAGE_SIZE, PagedTape.PAGE_SIZE * PagedTape.DIRECTORY_SIZE, LENGTH - 1 };
+        for (int address : edges) {
+            tape.set(address, address + 1);
+            expected.put(address, address + 1L);
+        }
+        for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+            assertEquals("cell " + entry.getKey(), entry.getValue().longValue(), tape.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void pagesAreOnlyAllocatedWhenWritten() {
+        PagedTape tape = new PagedTape(LENGTH);
+        tape.set(1, 1);
+        tape.set(2, 2);
+        assertEquals(1, tape.getAllocatedPageCount());
+        tape.set(PagedTape.PAGE_SIZE, 3);
+        tape.set(LENGTH - 1, 4);
+        assertEquals(3, tape.getAllocatedPageCount());
+        assertEquals(3L * PagedTape.PAGE_SIZE, tape.getCellsInUse());
+    }
+
+    @Test
+    public void restoredCheckpointsAreNotChangedByLaterWrites() {
+        PagedTape tape = new PagedTape(LENGTH);
+        tape.set(10, 1);
+        tape.set(PagedTape.PAGE_SIZE * 5, 2);
+        Object state = tape.checkpoint();
+        tape.set(10, 3);
+        tape.set(20, 4);
+        tape.set(LENGTH - 1, 5);
+
+        tape.restore(state);
+        assertEquals(1, tape.get(10));
+        assertEquals(0, tape.get(20));
+        assertEquals(2, tape.get(PagedTape.PAGE_SIZE * 5));
+        assertEquals(0, tape.get(LENGTH - 1));
+        assertEquals(2, tape.getAllocatedPageCount());
+
+        // writing after a restore must not leak into the checkpoint, which may be restored again.
+        tape.set(10, 6);
+        tape.restore(state);
+        assertEquals(1, tape.get(10));
+    }
+
+    @Test
+    public void machinesRunTheSameOnPagedAndDenseTapes() {
+        String code =
+            "loop: LOAD R1\n" +
+            "ADD 1\n" +
+            "STORE R1\n" +
+            "WRITE R2\n" +
+            "LOAD R2\n" +
+            "ADD 1031\n" +
+            "STORE R2\n" +
+            "SUB 40000\n" +
+            "JZERO loop\n";
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Machine dense = new Machine(50000, 2, false, WordWidth.LONG, TapeStorage.DENSE);
+            Machine paged = new Machine(50000, 2, false, WordWidth.LONG, TapeStorage.PAGED);
+            dense.setExecutionEngine(engine);
+            paged.setExecutionEngine(engine);
+            dense.setProgram(Assembler.compile(code));
+            paged.setProgram(Assembler.compile(code));
+            dense.run(Long.MAX_VALUE);
+            paged.run(Long.MAX_VALUE);
+            assertSameState(dense, paged);
+        }
+    }
+
+    @Test
+    public void machineSnapshotsOfPagedTapes() {
+        Machine machine = new Machine(1 << 20, 2, false, WordWidth.LONG, TapeStorage.PAGED);
+        machine.setTape(7, 70);
+        MachineSnapshot snapshot = machine.checkpoint();
+        machine.setTape(7, 71);
+        machine.setTape(1 << 19, 72);
+        machine.restore(snapshot);
+        assertEquals(70, machine.getTape(7));
+        assertEquals(0, machine.getTape(1 << 19));
+    }
+}
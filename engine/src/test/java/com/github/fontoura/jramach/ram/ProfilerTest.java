@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static com.github.fontoura.jramach.ram.MachineAssert.machine;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ProfilerTest {
+    private static final String COUNTDOWN = "; c\n\nLOAD 5\nl: SUB 1\n\nJPOS l\nend:";
+
+    private static Profiler profile(String code, ExecutionEngine engine) {
+        Machine machine = machine(code, 4, 4, engine);
+        Profiler profiler = new Profiler();
+        machine.setProfiler(profiler);
+        machine.run(Long.MAX_VALUE);
+        return profiler;
+    }
+
+    @Test
+    public void countsEveryInstruction() {
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            ExecutionProfile profile = profile(COUNTDOWN, engine).getProfile();
+            assertEquals(4, profile.getInstructionCount());
+            assertEquals(1, profile.getExecutions(1));
+            assertEquals(5, profile.getExecutions(2));
+            assertEquals(5, profile.getExecutions(3));
+            assertEquals(1, profile.getExecutions(4));
+            assertEquals(4, profile.getBranchesTaken(3));
+            assertEquals(1, profile.getBranchesNotTaken(3));
+            assertEquals(12, profile.getTotalSteps());
+        }
+    }
+
+    @Test
+    public void mapsInstructionsToSourceLines() {
+        ExecutionProfile profile = profile(COUNTDOWN, ExecutionEngine.DECODED).getProfile(COUNTDOWN);
+        assertEquals(3, profile.getSourceLine(1));
+        assertEquals(4, profile.getSourceLine(2));
+        assertEquals(6, profile.getSourceLine(3));
+        // the halt compile() adds for the trailing label.
+        assertEquals(7, profile.getSourceLine(4));
+    }
+
+    @Test
+    public void withoutASourceEveryInstructionIsItsOwnLine() {
+        ExecutionProfile profile = profile(COUNTDOWN, ExecutionEngine.DECODED).getProfile();
+        for (int pc = 1; pc <= profile.getInstructionCount(); pc ++) {
+            assertEquals(pc, profile.getSourceLine(pc));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsASourceForAnotherProgram() {
+        profile(COUNTDOWN, ExecutionEngine.DECODED).getProfile("LOAD 1\nHALT");
+    }
+
+    @Test
+    public void countsTapeAccesses() {
+        String code = "LOAD 3\nWRITE 2\nREAD 2\nREAD 2\nWRITE 0";
+        ExecutionProfile profile = profile(code, ExecutionEngine.DECODED).getProfile(code);
+        assertEquals(2, profile.getTapeReads(2));
+        assertEquals(1, profile.getTapeWrites(2));
+        assertEquals(1, profile.getTapeWrites(0));
+        assertEquals(0, profile.getTapeReads(0));
+    }
+
+    @Test
+    public void countsFarAddressesOnHugeSparseTapes() {
+        String code = "LOAD 7\nWRITE 2000000000\nREAD 2000000000\nWRITE 3\nHALT";
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Machine machine = new Machine(Integer.MAX_VALUE - 8, 2, false, WordWidth.INT, TapeStorage.PAGED);
+            machine.setExecutionEngine(engine);
+            machine.setProgram(Assembler.compile(code));
+            Profiler profiler = new Profiler();
+            machine.setProfiler(profiler);
+            machine.run(Long.MAX_VALUE);
+
+            ExecutionProfile profile = profiler.getProfile(code);
+            assertEquals(1, profile.getTapeWrites(2000000000));
+            assertEquals(1, profile.getTapeReads(2000000000));
+            assertEquals(0, profile.getTapeReads(1999999999));
+            assertEquals(2000000001, profile.getTapeLength());
+            assertEquals("address,reads,writes\n3,0,1\n2000000000,1,1\n", profile.toTapeCsv());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ProgramGeneratorTest {
+    private static void assertRunsAsPromised(ProgramGenerator generator, long seed) {
+        GeneratedProgram program = generator.generate(seed);
+        Machine machine = new Machine(program.getTapeLength(), program.getRegisterCount(), false);
+        machine.setProgram(program.getInstructions());
+        RunResult result = machine.run(program.getStepCount() + 1);
+        assertTrue("program " + seed + " halts", result.isHalted());
+        assertEquals("steps of program " + seed, program.getStepCount(), result.getSteps());
+    }
+
+    @Test
+    public void stepCountsAreExact() {
+        for (ProgramGenerator.TapeAccess tapeAccess : ProgramGenerator.TapeAccess.values()) {
+            ProgramGenerator generator = new ProgramGenerator.Builder().tapeAccess(tapeAccess).tapeDensity(0.5).build();
+            for (long seed = 0; seed < 20; seed ++) {
+                assertRunsAsPromised(generator, seed);
+            }
+        }
+    }
+
+    @Test
+    public void sameSeedGivesTheSameProgram() {
+        ProgramGenerator generator = new ProgramGenerator.Builder().size(300).build();
+        assertEquals(generator.generate(42).getSource(), generator.generate(42).getSource());
+    }
+
+    @Test
+    public void sourceAssemblesToTheSameProgram() {
+        GeneratedProgram program = new ProgramGenerator.Builder().build().generate(7);
+        assertEquals(Assembler.decompile(program.getInstructions()), Assembler.decompile(Assembler.compile(program.getSource())));
+    }
+
+    @Test
+    public void stridedAccessOnTapesShorterThanTheDefaultStride() {
+        for (int tapeLength = 1; tapeLength < 8; tapeLength ++) {
+            ProgramGenerator generator = new ProgramGenerator.Builder().tapeAccess(ProgramGenerator.TapeAccess.STRIDED).tapeLength(tapeLength).tapeDensity(0.5).build();
+            for (long seed = 0; seed < 5; seed ++) {
+                assertRunsAsPromised(generator, seed);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void explicitStrideLongerThanTheTapeIsRejected() {
+        new ProgramGenerator.Builder().tapeAccess(ProgramGenerator.TapeAccess.STRIDED).tapeLength(4).stride(5).build();
+    }
+}
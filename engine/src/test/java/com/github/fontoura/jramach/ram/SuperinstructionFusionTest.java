@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SuperinstructionFusionTest {
+    // counts R1 down from 3, adding 2 to R2 each time; the first trip jumps into the middle of the LOAD/ADD/STORE.
+    private static final String JUMP_INTO_PAIR =
+        "LOAD 3\n" +
+        "STORE R1\n" +
+        "LOAD 0\n" +
+        "JUMP middle\n" +
+        "top: LOAD R2\n" +
+        "middle: ADD 2\n" +
+        "STORE R2\n" +
+        "LOAD R1\n" +
+        "SUB 1\n" +
+        "STORE R1\n" +
+        "JPOS top\n" +
+        "LOAD R2\n" +
+        "WRITE 0\n";
+
+    // the STORE and the JZERO are jump targets, so both pairs before them span the end of a block.
+    private static final String PAIRS_ACROSS_BLOCKS =
+        "LOAD 4\n" +
+        "STORE R1\n" +
+        "top: LOAD R2\n" +
+        "ADD 3\n" +
+        "store: STORE R2\n" +
+        "LOAD R1\n" +
+        "SUB 1\n" +
+        "check: JZERO done\n" +
+        "STORE R1\n" +
+        "JZERO check\n" +
+        "JPOS top\n" +
+        "JUMP store\n" +
+        "done: LOAD R2\n" +
+        "WRITE 1\n";
+
+    private static Machine fused(String code) {
+        Machine machine = MachineAssert.machine(code, 4, 3, ExecutionEngine.DECODED);
+        machine.setProgram(SuperinstructionFusion.fuse(DecodedProgram.decode(Assembler.compile(code))));
+        return machine;
+    }
+
+    private static void assertEquivalent(String code, long[] budgets) {
+        Machine expected = MachineAssert.machine(code, 4, 3, ExecutionEngine.INTERPRETED);
+        Machine actual = fused(code);
+        for (long budget : budgets) {
+            assertEquals(expected.run(budget).getStatus(), actual.run(budget).getStatus());
+            MachineAssert.assertSameState(expected, actual);
+        }
+    }
+
+    @Test
+    public void fusesTheExpectedPairs() {
+        DecodedProgram jumpIntoPair = SuperinstructionFusion.fuse(DecodedProgram.decode(Assembler.compile(JUMP_INTO_PAIR)));
+        assertEquals(DecodedProgram.OP_LOAD_ADD_STORE, jumpIntoPair.getFusedOpcode(4));
+        assertEquals(DecodedProgram.OP_LOAD_SUB_STORE, jumpIntoPair.getFusedOpcode(7));
+        DecodedProgram acrossBlocks = SuperinstructionFusion.fuse(DecodedProgram.decode(Assembler.compile(PAIRS_ACROSS_BLOCKS)));
+        assertEquals(DecodedProgram.OP_LOAD_ADD_STORE, acrossBlocks.getFusedOpcode(2));
+        assertEquals(DecodedProgram.OP_SUB_JZERO, acrossBlocks.getFusedOpcode(6));
+    }
+
+    @Test
+    public void jumpsIntoThePairMatchTheInterpreter() {
+        assertEquivalent(JUMP_INTO_PAIR, new long[] { Long.MAX_VALUE });
+    }
+
+    @Test
+    public void pairsAcrossBlockEndsMatchTheInterpreter() {
+        assertEquivalent(PAIRS_ACROSS_BLOCKS, new long[] { Long.MAX_VALUE });
+    }
+
+    @Test
+    public void budgetsCutThroughPairs() {
+        for (long budget = 1; budget < 8; budget ++) {
+            long[] budgets = new long[40];
+            for (int i = 0; i < budgets.length; i ++) {
+                budgets[i] = budget;
+            }
+            assertEquivalent(JUMP_INTO_PAIR, budgets);
+            assertEquivalent(PAIRS_ACROSS_BLOCKS, budgets);
+        }
+    }
+}
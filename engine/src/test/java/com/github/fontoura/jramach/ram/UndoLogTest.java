@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram;
+
+import static com.github.fontoura.jramach.ram.MachineAssert.assertSameState;
+import static com.github.fontoura.jramach.ram.MachineAssert.machine;
+import static com.github.fontoura.jramach.ram.MachineAssert.step;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class UndoLogTest {
+    // writes R1 to cell 0 and R1 / 2 to cell 1 on every pass, and never touches the others.
+    private static final String LOOP =
+        "loop: LOAD R1\n" +
+        "ADD 1\n" +
+        "STORE R1\n" +
+        "WRITE 0\n" +
+        "HALF\n" +
+        "WRITE 1\n" +
+        "JUMP loop\n";
+
+    private static Machine logged(int capacity) {
+        Machine machine = machine(LOOP, 4, 2, ExecutionEngine.DECODED);
+        machine.setUndoLogCapacity(capacity);
+        return machine;
+    }
+
+    private static Machine reference(long steps) {
+        Machine machine = machine(LOOP, 4, 2, ExecutionEngine.INTERPRETED);
+        step(machine, steps);
+        return machine;
+    }
+
+    @Test
+    public void stepBackRestoresEveryEarlierState() {
+        Machine machine = logged(16);
+        machine.run(500);
+        for (long steps = 499; steps >= 0; steps --) {
+            assertTrue(machine.stepBack());
+            assertSameState(reference(steps), machine);
+        }
+        assertFalse(machine.stepBack());
+    }
+
+    @Test
+    public void rewindToGoesBackPastTheLog() {
+        Machine machine = logged(8);
+        machine.run(1000);
+        assertTrue(machine.rewindTo(123));
+        assertSameState(reference(123), machine);
+        assertFalse(machine.rewindTo(124));
+    }
+
+    @Test
+    public void stepBackToTapeWriteStopsBeforeTheWrite() {
+        Machine machine = logged(16);
+        machine.run(1000);
+        // a pass is seven steps, so the 1000th step was the last one's WRITE 1, and the one before it was seven steps earlier.
+        assertTrue(machine.stepBackToTapeWrite(1));
+        assertSameState(reference(999), machine);
+        assertTrue(machine.stepBackToTapeWrite(1));
+        assertSameState(reference(992), machine);
+    }
+
+    @Test
+    public void stepBackToTapeWriteKeepsThePositionWhenTheCellWasNeverWritten() {
+        Machine machine = logged(64);
+        machine.run(1000);
+        assertFalse(machine.stepBackToTapeWrite(3));
+        assertEquals(1000, machine.getStepCount());
+        assertSameState(reference(1000), machine);
+
+        // the history is still there afterwards.
+        assertTrue(machine.stepBack());
+        assertSameState(reference(999), machine);
+    }
+
+    @Test
+    public void externalChangesDropTheHistory() {
+        Machine machine = logged(16);
+        machine.run(100);
+        machine.setRegister(1, 5);
+        assertFalse(machine.canStepBack());
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.ram.jit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.github.fontoura.jramach.ram.Assembler;
+import com.github.fontoura.jramach.ram.DecodedProgram;
+import com.github.fontoura.jramach.ram.ExecutionEngine;
+import com.github.fontoura.jramach.ram.GeneratedProgram;
+import com.github.fontoura.jramach.ram.Machine;
+import com.github.fontoura.jramach.ram.MachineAssert;
+import com.github.fontoura.jramach.ram.ProgramGenerator;
+import com.github.fontoura.jramach.ram.WordWidth;
+
+public class BytecodeCompilerTest {
+    // R3 = R1 * R2, counting R2 down in R4, then writes the product to the cell R1 points at.
+    private static final String MULTIPLY =
+        "LOAD R2\n" +
+        "STORE R4\n" +
+        "JZERO done\n" +
+        "loop: LOAD R3\n" +
+        "ADD R1\n" +
+        "STORE R3\n" +
+        "LOAD R4\n" +
+        "SUB 1\n" +
+        "STORE R4\n" +
+        "JPOS loop\n" +
+        "done: LOAD R3\n" +
+        "WRITE R1\n";
+
+    private static Machine machine(String code, ExecutionEngine engine, WordWidth wordWidth, long... registers) {
+        Machine machine = MachineAssert.machine(code, 8, 4, engine, wordWidth);
+        for (int i = 0; i < registers.length; i ++) {
+            machine.setRegister(i + 1, registers[i]);
+        }
+        return machine;
+    }
+
+    private static void assertEquivalent(String code, WordWidth wordWidth, long[] budgets, long... registers) {
+        Machine expected = machine(code, ExecutionEngine.INTERPRETED, wordWidth, registers);
+        Machine actual = machine(code, ExecutionEngine.COMPILED, wordWidth, registers);
+        for (long budget : budgets) {
+            assertEquals(expected.run(budget).getStatus(), actual.run(budget).getStatus());
+            MachineAssert.assertSameState(expected, actual);
+        }
+    }
+
+    @Test
+    public void compiledCodeRunsOnTheGivenArrays() {
+        CompiledProgram program = BytecodeCompiler.compile(DecodedProgram.decode(Assembler.compile(MULTIPLY)), 5, WordWidth.LONG);
+        assertNotNull(program);
+        long[] registers = { 0, 2, 6, 0, 0 };
+        long[] tape = new long[4];
+        int[] state = new int[2];
+        state[BytecodeCompiler.STATE_PROGRAM_COUNTER] = 1;
+        long steps = program.execute(registers, tape, state, Long.MAX_VALUE);
+        assertEquals(12, registers[3]);
+        assertEquals(12, tape[2]);
+        assertEquals(3 + 7 * 6 + 2, steps);
+        assertEquals(13, state[BytecodeCompiler.STATE_PROGRAM_COUNTER]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingRegistersAreRejected() {
+        BytecodeCompiler.compile(DecodedProgram.decode(Assembler.compile("LOAD R5")), 5, WordWidth.LONG);
+    }
+
+    @Test
+    public void arbitraryPrecisionIsNotCompiled() {
+        assertNull(BytecodeCompiler.compile(DecodedProgram.decode(Assembler.compile(MULTIPLY)), 5, WordWidth.ARBITRARY));
+    }
+
+    @Test
+    public void programsAreCompiledOncePerShape() throws InterruptedException {
+        final DecodedProgram program = DecodedProgram.decode(Assembler.compile(MULTIPLY));
+        final CompiledProgram[] compiled = new CompiledProgram[8];
+        Thread[] threads = new Thread[compiled.length];
+        for (int i = 0; i < threads.length; i ++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    compiled[index] = program.getCompiledProgram(5, WordWidth.LONG);
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNotNull(compiled[0]);
+        for (CompiledProgram other : compiled) {
+            assertSame(compiled[0], other);
+        }
+        assertNotSame(compiled[0], program.getCompiledProgram(5, WordWidth.INT));
+        assertNotSame(compiled[0], program.getCompiledProgram(6, WordWidth.LONG));
+        assertNull(program.getCompiledProgram(5, WordWidth.ARBITRARY));
+    }
+
+    @Test
+    public void multiplyMatchesTheInterpreter() {
+        long[] all = { Long.MAX_VALUE };
+        assertEquivalent(MULTIPLY, WordWidth.INT, all, 3, 7);
+        assertEquivalent(MULTIPLY, WordWidth.LONG, all, 3, 7);
+        assertEquivalent(MULTIPLY, WordWidth.INT, all, 5, 0);
+    }
+
+    @Test
+    public void wordsWrapLikeTheInterpreter() {
+        long[] all = { Long.MAX_VALUE };
+        // the products overflow the word, so only what is left of them reaches cell 1.
+        assertEquivalent(MULTIPLY.replace("WRITE R1", "WRITE 1"), WordWidth.INT, all, 1000000000, 9);
+        assertEquivalent(MULTIPLY.replace("WRITE R1", "WRITE 1"), WordWidth.LONG, all, Long.MAX_VALUE / 2, 3);
+    }
+
+    @Test
+    public void faultsStopAtTheSameInstruction() {
+        long[] all = { Long.MAX_VALUE };
+        assertEquivalent(MULTIPLY, WordWidth.LONG, all, 100, 2);
+        assertEquivalent("LOAD 3\nREAD R1\nADD 1\n", WordWidth.INT, all, 8);
+    }
+
+    @Test
+    public void budgetsCutThroughBlocks() {
+        assertEquivalent(MULTIPLY, WordWidth.INT, new long[] { 1, 2, 5, 13, 1, 1, 40, 3 }, 4, 9);
+        for (long budget = 0; budget < 30; budget ++) {
+            assertEquivalent(MULTIPLY, WordWidth.LONG, new long[] { budget, budget }, 2, 5);
+        }
+    }
+
+    @Test
+    public void generatedProgramsMatchTheInterpreter() {
+        for (ProgramGenerator.TapeAccess tapeAccess : ProgramGenerator.TapeAccess.values()) {
+            ProgramGenerator generator = new ProgramGenerator.Builder().tapeAccess(tapeAccess).tapeDensity(0.4).tapeLength(16).build();
+            for (long seed = 0; seed < 10; seed ++) {
+                GeneratedProgram program = generator.generate(seed);
+                for (WordWidth wordWidth : new WordWidth[] { WordWidth.INT, WordWidth.LONG }) {
+                    Machine expected = new Machine(program.getTapeLength(), program.getRegisterCount(), false, wordWidth);
+                    Machine actual = new Machine(program.getTapeLength(), program.getRegisterCount(), false, wordWidth);
+                    expected.setExecutionEngine(ExecutionEngine.INTERPRETED);
+                    actual.setExecutionEngine(ExecutionEngine.COMPILED);
+                    expected.setProgram(program.getInstructions());
+                    actual.setProgram(program.getInstructions());
+                    expected.run(program.getStepCount() / 3);
+                    actual.run(program.getStepCount() / 3);
+                    MachineAssert.assertSameState(expected, actual);
+                    expected.runUntilHalt();
+                    actual.runUntilHalt();
+                    MachineAssert.assertSameState(expected, actual);
+                    assertEquals(program.getStepCount(), actual.getStepCount());
+                }
+            }
+        }
+    }
+}
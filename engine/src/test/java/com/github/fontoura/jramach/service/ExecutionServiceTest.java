@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014-2023 Felipe Michels Fontoura
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.fontoura.jramach.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.fontoura.jramach.ram.MachineMetrics;
+
+public class ExecutionServiceTest {
+    private ExecutionService service;
+
+    @Before
+    public void start() throws IOException {
+        service = new ExecutionService(0);
+        service.start();
+    }
+
+    @After
+    public void stop() {
+        service.stop();
+    }
+
+    private HttpURLConnection post(String query, String source) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + service.getPort() + "/run" + (query != null ? "?" + query : ""));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setReadTimeout(10000);
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(source.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            out.close();
+        }
+        return connection;
+    }
+
+    private static String body(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void runsAProgram() throws IOException {
+        HttpURLConnection connection = post("tape=3,4&tapeLength=3", "READ 0\nADD R1\nREAD 1\nSTORE R1\nREAD 0\nADD R1\nWRITE 2");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("{\"status\":\"HALTED\",\"steps\":7,\"programCounter\":1,\"accumulator\":7,\"tape\":[3,4,7]}", body(connection));
+    }
+
+    @Test
+    public void stopsAtTheStepBudget() throws IOException {
+        long exhaustions = MachineMetrics.getInstance().getBudgetExhaustions();
+        HttpURLConnection connection = post("steps=1000000&tapeLength=0", "loop: JUMP loop");
+        assertEquals(200, connection.getResponseCode());
+        String body = body(connection);
+        assertTrue(body, body.startsWith("{\"status\":\"BUDGET_EXHAUSTED\",\"steps\":1000000,"));
+        // the job is one run, however many slices it took.
+        assertEquals(exhaustions + 1, MachineMetrics.getInstance().getBudgetExhaustions());
+    }
+
+    @Test
+    public void reportsFaults() throws IOException {
+        HttpURLConnection connection = post("tapeLength=2", "READ 5");
+        assertEquals(200, connection.getResponseCode());
+        String body = body(connection);
+        assertTrue(body, body.contains("\"faultCode\":\"TAPE_READ_OUT_OF_BOUNDS\""));
+    }
+
+    @Test
+    public void literalsMustFitTheWordWidth() throws IOException {
+        HttpURLConnection connection = post("tapeLength=0", "LOAD 4000000000");
+        assertEquals(400, connection.getResponseCode());
+        body(connection);
+        connection = post("tapeLength=0&width=long", "LOAD 4000000000");
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(body(connection).contains("\"accumulator\":4000000000"));
+    }
+
+    @Test
+    public void rejectsHugeTapes() throws IOException {
+        HttpURLConnection connection = post("tapeLength=1500000000", "HALT");
+        assertEquals(400, connection.getResponseCode());
+        assertTrue(body(connection).contains("tape length"));
+    }
+
+    @Test
+    public void rejectsHugeRegisterCounts() throws IOException {
+        HttpURLConnection connection = post("registers=1500000000", "HALT");
+        assertEquals(400, connection.getResponseCode());
+        assertTrue(body(connection).contains("register count"));
+    }
+
+    @Test
+    public void rejectsBadPrograms() throws IOException {
+        HttpURLConnection connection = post(null, "FROB 1");
+        assertEquals(400, connection.getResponseCode());
+        assertTrue(body(connection).contains("error"));
+    }
+
+    @Test
+    public void rejectsMissingRegisters() throws IOException {
+        HttpURLConnection connection = post("registers=2", "LOAD R9");
+        assertEquals(400, connection.getResponseCode());
+        assertTrue(body(connection).contains("R9"));
+    }
+}
@@ -34,6 +34,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -50,15 +51,22 @@ import javax.swing.UIManager;
 import javax.swing.border.EmptyBorder;
 
 import com.github.fontoura.jramach.ram.Assembler;
+import com.github.fontoura.jramach.ram.FaultListener;
 import com.github.fontoura.jramach.ram.Instruction;
 import com.github.fontoura.jramach.ram.Machine;
+import com.github.fontoura.jramach.ram.MachineMetrics;
+import com.github.fontoura.jramach.ram.WordWidth;
 
 public class MainWindow extends JFrame {
     private static final long serialVersionUID = 1L;
 
+    // about a megabyte and a half of history to step back through, with checkpoints reaching further.
+    private static final int UNDO_LOG_CAPACITY = 1 << 16;
+
     private JTextArea textArea;
     private JSpinner tapeLengthInput;
     private JSpinner registerCountInput;
+    private JComboBox<WordWidth> wordWidthInput;
 
     private File lastChosenFile;
 
@@ -68,6 +76,7 @@ public class MainWindow extends JFrame {
         } catch (Exception e) {
             e.printStackTrace();
         }
+        MachineMetrics.register();
         MainWindow window = new MainWindow();
         window.setVisible(true);
     }
@@ -156,9 +165,9 @@ public class MainWindow extends JFrame {
         settingsPanel.setBorder(new EmptyBorder(5, 5, 5, 5));
         GridBagLayout gbl_settingsPanel = new GridBagLayout();
         gbl_settingsPanel.columnWidths = new int[]{0, 0};
-        gbl_settingsPanel.rowHeights = new int[]{0, 0, 0};
+        gbl_settingsPanel.rowHeights = new int[]{0, 0, 0, 0};
         gbl_settingsPanel.columnWeights = new double[]{0.0, 1.0};
-        gbl_settingsPanel.rowWeights = new double[]{0.0, 0.0, Double.MIN_VALUE};
+        gbl_settingsPanel.rowWeights = new double[]{0.0, 0.0, 0.0, Double.MIN_VALUE};
         settingsPanel.setLayout(gbl_settingsPanel);
 
         JLabel tapeLengthLabel = new JLabel("Tape length: ");
@@ -183,7 +192,7 @@ public class MainWindow extends JFrame {
         GridBagConstraints gbc_registerCountLabel = new GridBagConstraints();
         gbc_registerCountLabel.fill = GridBagConstraints.NONE;
         gbc_registerCountLabel.anchor = GridBagConstraints.EAST;
-        gbc_registerCountLabel.insets = new Insets(0, 0, 0, 5);
+        gbc_registerCountLabel.insets = new Insets(0, 0, 5, 5);
         gbc_registerCountLabel.gridx = 0;
         gbc_registerCountLabel.gridy = 1;
         settingsPanel.add(registerCountLabel, gbc_registerCountLabel);
@@ -192,11 +201,29 @@ public class MainWindow extends JFrame {
         registerCountInput.setModel(new SpinnerNumberModel(16, 1, 100, 1));
         GridBagConstraints gbc_registerCountInput = new GridBagConstraints();
         gbc_registerCountInput.fill = GridBagConstraints.BOTH;
-        gbc_registerCountInput.insets = new Insets(0, 0, 0, 0);
+        gbc_registerCountInput.insets = new Insets(0, 0, 5, 0);
         gbc_registerCountInput.gridx = 1;
         gbc_registerCountInput.gridy = 1;
         settingsPanel.add(registerCountInput, gbc_registerCountInput);
 
+        JLabel wordWidthLabel = new JLabel("Word width: ");
+        GridBagConstraints gbc_wordWidthLabel = new GridBagConstraints();
+        gbc_wordWidthLabel.fill = GridBagConstraints.NONE;
+        gbc_wordWidthLabel.anchor = GridBagConstraints.EAST;
+        gbc_wordWidthLabel.insets = new Insets(0, 0, 0, 5);
+        gbc_wordWidthLabel.gridx = 0;
+        gbc_wordWidthLabel.gridy = 2;
+        settingsPanel.add(wordWidthLabel, gbc_wordWidthLabel);
+
+        wordWidthInput = new JComboBox<WordWidth>(WordWidth.values());
+        wordWidthInput.setSelectedItem(WordWidth.INT);
+        GridBagConstraints gbc_wordWidthInput = new GridBagConstraints();
+        gbc_wordWidthInput.fill = GridBagConstraints.BOTH;
+        gbc_wordWidthInput.insets = new Insets(0, 0, 0, 0);
+        gbc_wordWidthInput.gridx = 1;
+        gbc_wordWidthInput.gridy = 2;
+        settingsPanel.add(wordWidthInput, gbc_wordWidthInput);
+
         JPanel buttonPanel = new JPanel();
         GridBagConstraints gbc_buttonPanel = new GridBagConstraints();
         gbc_buttonPanel.fill = GridBagConstraints.NONE;
@@ -290,7 +317,7 @@ public class MainWindow extends JFrame {
 
     protected void evtCompile() {
         try {
-            Instruction[] i = Assembler.compile(textArea.getText());
+            Instruction[] i = Assembler.compile(textArea.getText(), (WordWidth) wordWidthInput.getSelectedItem());
             if (i.length == 0) {
                 JOptionPane.showMessageDialog(
                     this,
@@ -316,7 +343,8 @@ public class MainWindow extends JFrame {
 
     protected void evtExecute() {
         try {
-            Instruction[] instructions = Assembler.compile(textArea.getText());
+            WordWidth wordWidth = (WordWidth) wordWidthInput.getSelectedItem();
+            Instruction[] instructions = Assembler.compile(textArea.getText(), wordWidth);
             if (instructions.length == 0) {
                 JOptionPane.showMessageDialog(
                     this,
@@ -330,8 +358,10 @@ public class MainWindow extends JFrame {
             int tapeLength = (Integer) tapeLengthInput.getValue();
             int registerCount = (Integer) registerCountInput.getValue();
 
-            Machine machine = new Machine(tapeLength, registerCount);
+            Machine machine = new Machine(tapeLength, registerCount, wordWidth);
             machine.setProgram(instructions);
+            machine.setFaultListener(FaultListener.PRINTING);
+            machine.setUndoLogCapacity(UNDO_LOG_CAPACITY);
             RunWindow display = new RunWindow(this, machine);
             display.setVisible(true);
         } catch (Exception e) {
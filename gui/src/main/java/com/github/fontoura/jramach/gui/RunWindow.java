@@ -31,11 +31,14 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.swing.JButton;
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSlider;
@@ -48,6 +51,9 @@ import com.github.fontoura.jramach.gui.components.RegistersDisplay;
 import com.github.fontoura.jramach.gui.components.RunningCodeComponent;
 import com.github.fontoura.jramach.gui.components.TapeDisplayComponent;
 import com.github.fontoura.jramach.ram.Machine;
+import com.github.fontoura.jramach.ram.MachineEvent;
+import com.github.fontoura.jramach.ram.MachineListener;
+import com.github.fontoura.jramach.ram.MachineMetrics;
 
 public class RunWindow extends JDialog {
     private static final long serialVersionUID = 1L;
@@ -64,6 +70,8 @@ public class RunWindow extends JDialog {
 
     private JButton buttonAction;
     private JButton buttonStep;
+    private JButton buttonStepBack;
+    private JButton buttonBackToWrite;
     private JButton buttonReset;
     private JSlider speedSlider;
     private RegistersDisplay registersDisplay;
@@ -71,7 +79,17 @@ public class RunWindow extends JDialog {
     private RunningCodeComponent codeDisplay;
 
     private Machine machine;
-    private RunThread runThread;
+    // what the current step touched, and what the one before it did; both need refreshing after a step.
+    private ChangeCollector changes = new ChangeCollector();
+    private ChangeCollector lastChanges = new ChangeCollector();
+    private final MachineListener changeListener = new MachineListener() {
+        @Override
+        public void machineChanged(MachineEvent event) {
+            changes.add(event);
+        }
+    };
+    // read by the run thread on every step, so it must see the halt button's write.
+    private volatile RunThread runThread;
     private long sleepIntervalMs = SLEEP_INTERVALS_MS[INITIAL_SLEEP_INTERVAL_INDEX];
 
     public RunWindow(JFrame frame, Machine machine) {
@@ -246,6 +264,22 @@ public class RunWindow extends JDialog {
         });
         buttonPanel.add(buttonStep);
 
+        buttonStepBack = new JButton("Step back");
+        buttonStepBack.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                buttonStepBack();
+            }
+        });
+        buttonPanel.add(buttonStepBack);
+
+        buttonBackToWrite = new JButton("Back to write");
+        buttonBackToWrite.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                buttonBackToWrite();
+            }
+        });
+        buttonPanel.add(buttonBackToWrite);
+
         buttonReset = new JButton("Reset");
         buttonReset.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
@@ -257,10 +291,20 @@ public class RunWindow extends JDialog {
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                runThread = null;
+                stopRunThread();
                 dispose();
             }
+
+            @Override
+            public void windowClosed(WindowEvent e) {
+                RunWindow.this.machine.removeMachineListener(changeListener);
+                MachineMetrics.getInstance().sessionClosed();
+            }
         });
+
+        machine.addMachineListener(changeListener);
+        refreshButton();
+        MachineMetrics.getInstance().sessionOpened();
     }
 
     protected void speedSliderEvent() {
@@ -274,12 +318,21 @@ public class RunWindow extends JDialog {
                 refreshButton();
                 runThread.start();
             } else {
-                runThread = null;
+                stopRunThread();
                 buttonAction.setEnabled(false);
             }
         }
     }
 
+    private void stopRunThread() {
+        RunThread thread = runThread;
+        if (thread != null) {
+            runThread = null;
+            // wakes it up from the pause between steps.
+            thread.interrupt();
+        }
+    }
+
     private void buttonStep() {
         synchronized (this) {
             if (runThread == null) {
@@ -288,12 +341,61 @@ public class RunWindow extends JDialog {
         }
     }
 
+    private void buttonStepBack() {
+        synchronized (this) {
+            if (runThread == null) {
+                machine.stepBack();
+                refreshAll();
+                refreshButton();
+            }
+        }
+    }
+
+    private void buttonBackToWrite() {
+        synchronized (this) {
+            if (runThread != null) {
+                return;
+            }
+            String s = JOptionPane.showInputDialog(
+                this,
+                "Please input the tape cell whose previous write to go back to",
+                "0"
+            );
+            if (s == null) {
+                return;
+            }
+            int tapeAddress;
+            try {
+                tapeAddress = Integer.parseInt(s.trim());
+            } catch (NumberFormatException e) {
+                tapeAddress = -1;
+            }
+            if (tapeAddress < 0 || tapeAddress >= machine.getTapeLength()) {
+                JOptionPane.showMessageDialog(
+                    this,
+                    "The value \"" + s + "\" is not a tape cell!",
+                    "Error!",
+                    JOptionPane.ERROR_MESSAGE
+                );
+                return;
+            }
+            if (!machine.stepBackToTapeWrite(tapeAddress)) {
+                JOptionPane.showMessageDialog(
+                    this,
+                    "The tape cell " + tapeAddress + " was not written in the recorded history.",
+                    "Back to write",
+                    JOptionPane.INFORMATION_MESSAGE
+                );
+            }
+            refreshAll();
+            refreshButton();
+        }
+    }
+
     private void buttonReset() {
         synchronized (this) {
             machine.reset();
-            registersDisplay.refresh();
-            tapeDisplay.refresh();
-            codeDisplay.refresh();
+            refreshAll();
             refreshButton();
         }
     }
@@ -303,16 +405,22 @@ public class RunWindow extends JDialog {
             buttonAction.setText("Execute");
             buttonAction.setEnabled(false);
             buttonStep.setEnabled(false);
+            buttonStepBack.setEnabled(machine.canStepBack());
+            buttonBackToWrite.setEnabled(machine.canStepBack());
             buttonReset.setEnabled(true);
         } else if (runThread == null) {
             buttonAction.setText("Execute");
             buttonAction.setEnabled(true);
             buttonStep.setEnabled(true);
+            buttonStepBack.setEnabled(machine.canStepBack());
+            buttonBackToWrite.setEnabled(machine.canStepBack());
             buttonReset.setEnabled(true);
         } else {
             buttonAction.setText("Halt");
             buttonAction.setEnabled(true);
             buttonStep.setEnabled(false);
+            buttonStepBack.setEnabled(false);
+            buttonBackToWrite.setEnabled(false);
             buttonReset.setEnabled(false);
         }
     }
@@ -320,13 +428,30 @@ public class RunWindow extends JDialog {
     private void doStep() {
         if (!machine.isHalted()) {
             machine.nextInstruction();
-            registersDisplay.refresh();
-            tapeDisplay.refresh();
-            codeDisplay.refresh();
+            refreshChanges();
         }
         refreshButton();
     }
 
+    // stepping back and resetting may change any number of cells, so they refresh everything.
+    private void refreshAll() {
+        registersDisplay.refresh();
+        tapeDisplay.refresh();
+        codeDisplay.refresh();
+        changes.clear();
+        lastChanges.clear();
+    }
+
+    private void refreshChanges() {
+        lastChanges.refresh();
+        changes.refresh();
+
+        ChangeCollector collector = lastChanges;
+        lastChanges = changes;
+        changes = collector;
+        changes.clear();
+    }
+
     class RunThread extends Thread {
         @Override
         public void run() {
@@ -339,17 +464,72 @@ public class RunWindow extends JDialog {
                     try {
                         sleep(sleepIntervalMs);
                     } catch (InterruptedException e) {}
+                    if (runThread != this) {
+                        break;
+                    }
                     machine.nextInstruction();
-                    registersDisplay.refresh();
-                    tapeDisplay.refresh();
-                    codeDisplay.refresh();
-                    if (runThread == null) {
+                    refreshChanges();
+                    if (runThread != this) {
                         running = false;
                     }
                 }
             } catch (Throwable t) {}
-            runThread = null;
+            synchronized (RunWindow.this) {
+                if (runThread == this) {
+                    runThread = null;
+                }
+            }
             refreshButton();
         }
     }
+
+    class ChangeCollector {
+        private boolean accumulator;
+        private final Set<Integer> registers = new HashSet<Integer>();
+        private final Set<Integer> tapeAddresses = new HashSet<Integer>();
+        private final Set<Integer> instructionAddresses = new HashSet<Integer>();
+
+        void add(MachineEvent event) {
+            switch (event.getKind()) {
+            case MachineEvent.PROGRAM_COUNTER_MOVED:
+                instructionAddresses.add((int) event.getOldValue());
+                instructionAddresses.add((int) event.getNewValue());
+                break;
+            case MachineEvent.ACCUMULATOR_READ:
+            case MachineEvent.ACCUMULATOR_WRITTEN:
+                accumulator = true;
+                break;
+            case MachineEvent.REGISTER_READ:
+            case MachineEvent.REGISTER_WRITTEN:
+                registers.add(event.getIndex());
+                break;
+            case MachineEvent.TAPE_READ:
+            case MachineEvent.TAPE_WRITTEN:
+                tapeAddresses.add(event.getIndex());
+                break;
+            }
+        }
+
+        void refresh() {
+            if (accumulator) {
+                registersDisplay.refreshAccumulator();
+            }
+            for (int number : registers) {
+                registersDisplay.refreshRegister(number);
+            }
+            for (int tapeAddress : tapeAddresses) {
+                tapeDisplay.refresh(tapeAddress);
+            }
+            for (int instructionAddress : instructionAddresses) {
+                codeDisplay.refresh(instructionAddress);
+            }
+        }
+
+        void clear() {
+            accumulator = false;
+            registers.clear();
+            tapeAddresses.clear();
+            instructionAddresses.clear();
+        }
+    }
 }
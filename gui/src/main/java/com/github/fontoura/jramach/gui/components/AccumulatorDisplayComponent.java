@@ -23,6 +23,8 @@
 
 package com.github.fontoura.jramach.gui.components;
 
+import java.math.BigInteger;
+
 import com.github.fontoura.jramach.ram.Machine;
 
 public class AccumulatorDisplayComponent extends ValueDisplayComponent {
@@ -31,19 +33,19 @@ public class AccumulatorDisplayComponent extends ValueDisplayComponent {
     private Machine machine;
 
     public AccumulatorDisplayComponent(Machine machine) {
-        super("Accumulator (register #0)");
+        super("Accumulator (register #0)", machine.getWordWidth());
         this.machine = machine;
         refresh();
     }
 
     @Override
-    public int getValue() {
-        return machine.getAccumulator();
+    public BigInteger getValue() {
+        return machine.getBigAccumulator();
     }
 
     @Override
-    public void setValue(int v) {
-        machine.setAccumulator(v);
+    public void setValue(BigInteger v) {
+        machine.setBigAccumulator(v);
     }
 
     @Override
@@ -23,6 +23,8 @@
 
 package com.github.fontoura.jramach.gui.components;
 
+import java.math.BigInteger;
+
 import com.github.fontoura.jramach.ram.Machine;
 
 public class RegisterDisplayComponent extends ValueDisplayComponent {
@@ -32,20 +34,20 @@ public class RegisterDisplayComponent extends ValueDisplayComponent {
     private Machine machine;
 
     public RegisterDisplayComponent(Machine machine, int number) {
-        super("Register #" + number);
+        super("Register #" + number, machine.getWordWidth());
         this.number = number;
         this.machine = machine;
         refresh();
     }
 
     @Override
-    public int getValue() {
-        return machine.getRegister(number);
+    public BigInteger getValue() {
+        return machine.getBigRegister(number);
     }
 
     @Override
-    public void setValue(int v) {
-        machine.setRegister(number, v);
+    public void setValue(BigInteger v) {
+        machine.setBigRegister(number, v);
     }
 
     @Override
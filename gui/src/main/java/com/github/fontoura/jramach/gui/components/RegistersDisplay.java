@@ -70,4 +70,16 @@ public class RegistersDisplay extends JPanel {
         for (int i = 0; i < regs.length; i ++)
             regs[i].refresh();
     }
+
+    public void refreshAccumulator() {
+        acc.refresh();
+    }
+
+    // register zero is the accumulator.
+    public void refreshRegister(int number) {
+        if (number == 0)
+            acc.refresh();
+        else if (number > 0 && number <= regs.length)
+            regs[number - 1].refresh();
+    }
 }
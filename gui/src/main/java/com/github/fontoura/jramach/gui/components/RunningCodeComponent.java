@@ -67,4 +67,10 @@ public class RunningCodeComponent extends JPanel {
         for (int i = 0; i < code.length; i ++)
             code[i].refresh();
     }
+
+    // instruction addresses start at one, like the program counter.
+    public void refresh(int instructionAddress) {
+        if (instructionAddress >= 1 && instructionAddress <= code.length)
+            code[instructionAddress - 1].refresh();
+    }
 }
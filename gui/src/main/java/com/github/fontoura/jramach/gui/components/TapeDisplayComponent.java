@@ -65,4 +65,9 @@ public class TapeDisplayComponent extends JPanel {
         for (int i = 0; i < tape.length; i ++)
             tape[i].refresh();
     }
+
+    public void refresh(int tapeAddress) {
+        if (tapeAddress >= 0 && tapeAddress < tape.length)
+            tape[tapeAddress].refresh();
+    }
 }
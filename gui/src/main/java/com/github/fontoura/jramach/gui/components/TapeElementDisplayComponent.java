@@ -23,6 +23,8 @@
 
 package com.github.fontoura.jramach.gui.components;
 
+import java.math.BigInteger;
+
 import com.github.fontoura.jramach.ram.Machine;
 
 public class TapeElementDisplayComponent extends ValueDisplayComponent {
@@ -32,20 +34,20 @@ public class TapeElementDisplayComponent extends ValueDisplayComponent {
     private Machine machine;
 
     public TapeElementDisplayComponent(Machine machine, int number) {
-        super("Tape element #" + number);
+        super("Tape element #" + number, machine.getWordWidth());
         this.number = number;
         this.machine = machine;
         refresh();
     }
 
     @Override
-    public int getValue() {
-        return machine.getTape(number);
+    public BigInteger getValue() {
+        return machine.getBigTape(number);
     }
 
     @Override
-    public void setValue(int v) {
-        machine.setTape(number, v);
+    public void setValue(BigInteger v) {
+        machine.setBigTape(number, v);
     }
 
     @Override
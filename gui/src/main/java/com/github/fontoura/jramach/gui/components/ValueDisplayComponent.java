@@ -30,6 +30,7 @@ import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.math.BigInteger;
 
 import javax.swing.JButton;
 import javax.swing.JLabel;
@@ -37,10 +38,13 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.border.EmptyBorder;
 
+import com.github.fontoura.jramach.ram.WordWidth;
+
 public abstract class ValueDisplayComponent extends JPanel {
     private static final long serialVersionUID = 1L;
 
     private String nameV;
+    private WordWidth wordWidth;
     private BallComponent ball1, ball2;
     private JLabel valueLabel;
 
@@ -65,12 +69,13 @@ public abstract class ValueDisplayComponent extends JPanel {
             }
         }
 
-        valueLabel.setText(Integer.toString(getValue()));
+        valueLabel.setText(getValue().toString());
         validate();
     }
 
-    public ValueDisplayComponent(String name) {
+    public ValueDisplayComponent(String name, WordWidth wordWidth) {
         nameV = name;
+        this.wordWidth = wordWidth;
 
         setBorder(new EmptyBorder(5, 5, 5, 5));
         GridBagLayout gridBagLayout = new GridBagLayout();
@@ -119,17 +124,24 @@ public abstract class ValueDisplayComponent extends JPanel {
                 String s = JOptionPane.showInputDialog(
                     ValueDisplayComponent.this,
                     "Please input the new value for " + nameV,
-                    Integer.toString(getValue())
+                    getValue().toString()
                 );
                 try {
-                    int i = Integer.parseInt(s);
-                    if (i < 0) {
+                    BigInteger i = new BigInteger(s.trim());
+                    if (i.signum() < 0) {
                         JOptionPane.showMessageDialog(
                             ValueDisplayComponent.this,
                             "The value " + i + " is negative!",
                             "Error!",
                             JOptionPane.ERROR_MESSAGE
                         );
+                    } else if (!fits(i)) {
+                        JOptionPane.showMessageDialog(
+                            ValueDisplayComponent.this,
+                            "The value " + i + " is too large for a " + wordWidth.toString().toLowerCase() + " machine!",
+                            "Error!",
+                            JOptionPane.ERROR_MESSAGE
+                        );
                     } else {
                         setValue(i);
                         refresh();
@@ -150,8 +162,18 @@ public abstract class ValueDisplayComponent extends JPanel {
         add(setValue, gbc_setValue);
     }
 
-    public abstract int getValue();
-    public abstract void setValue(int i);
+    private boolean fits(BigInteger value) {
+        if (wordWidth == WordWidth.INT) {
+            return value.bitLength() < 32;
+        } else if (wordWidth == WordWidth.LONG) {
+            return value.bitLength() < 64;
+        } else {
+            return true;
+        }
+    }
+
+    public abstract BigInteger getValue();
+    public abstract void setValue(BigInteger i);
     public abstract boolean hasValueBeenRead();
     public abstract boolean hasValueBeenChanged();
 }